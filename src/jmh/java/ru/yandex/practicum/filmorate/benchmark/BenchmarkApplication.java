@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.service.DatasetGenerator;
+import ru.yandex.practicum.filmorate.service.DatasetSettings;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    Приложение без веб-сервера над своей базой H2 в памяти, заполненной DatasetGenerator.
+    Набор данных задают наследники (getSettings), база создается заново для каждого набора параметров.
+ */
+public abstract class BenchmarkApplication {
+    protected static final long SEED = 17;
+
+    protected ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:benchmark" + System.nanoTime());
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("filmorate.metrics.statements", "false"); //замеряем запросы без счетчика
+        properties.putAll(getProperties());
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(properties)
+                .run();
+        seed();
+        prepare();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    //параметры набора данных
+    protected abstract DatasetSettings getSettings();
+
+    //дополнительные настройки приложения для конкретного бенчмарка
+    protected Map<String, Object> getProperties() {
+        return Map.of();
+    }
+
+    //подготовка состояния бенчмарка после заполнения базы
+    protected void prepare() {
+    }
+
+    ///////////////////////////// Заполнение базы ////////////////////////////
+
+    private void seed() {
+        getBean(DatasetGenerator.class).generate(getSettings());
+        getBean(JdbcTemplate.class).execute("analyze"); //планировщик должен видеть реальные размеры таблиц
+    }
+}
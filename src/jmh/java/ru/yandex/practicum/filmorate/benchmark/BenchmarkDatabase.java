@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import ru.yandex.practicum.filmorate.service.DatasetSettings;
+
+/*
+    Приложение над базой, заполненной DatasetGenerator (см. BenchmarkApplication).
+    Размер задается параметрами users, films, likesPerUser, friendsPerUser; перекос - параметром skew:
+    популярность фильма с рангом r пропорциональна 1 / r^skew,
+    так что skew = 0 дает равномерное распределение, а skew около 1 - закон Ципфа.
+    Данные строятся детерминированно, база создается заново для каждого набора параметров.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase extends BenchmarkApplication {
+
+    @Param("10000")
+    public int users;
+
+    @Param("2000")
+    public int films;
+
+    @Param("20")
+    public int likesPerUser;
+
+    @Param("10")
+    public int friendsPerUser;
+
+    @Param({"0", "1"})
+    public double skew;
+
+    @Override
+    protected DatasetSettings getSettings() {
+        return DatasetSettings.builder()
+                .seed(SEED)
+                .users(users)
+                .films(films)
+                .likesPerUser(likesPerUser)
+                .friendsPerUser(friendsPerUser)
+                .skew(skew)
+                .build();
+    }
+}
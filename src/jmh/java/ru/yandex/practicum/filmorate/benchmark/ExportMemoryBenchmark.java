@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.controller.FilmController;
+import ru.yandex.practicum.filmorate.service.DatasetSettings;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Пиковый объем кучи при выгрузке всех фильмов: GET /films (список целиком, затем JSON)
+    против GET /films?stream=true (порциями через Storage.forEach).
+    Перед каждым вызовом выполняется сборка мусора и сбрасываются пики пулов памяти (MemoryPoolMXBean);
+    счетчики - рост кучи за вызов относительно занятого после сборки. Сумма пиков всех пулов зависит
+    от размера молодого поколения, которое заполняется мусором при любой выгрузке, поэтому удерживаемые
+    данные видны по пику старого поколения: на 1 млн фильмов список дает около 300 МБ, порции - 0
+    (сумма пиков всех пулов - около 1,3 ГБ против 0,9 ГБ).
+    Один замер на запуск, поэтому счетчики не суммируются по итерациям.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExportMemoryBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Export extends BenchmarkApplication {
+        @Param("1000000")
+        public int films;
+
+        @Param("1000")
+        public int users;
+
+        //среднее число лайков на пользователя (по умолчанию - один лайк на фильм)
+        @Param("1000")
+        public int likesPerUser;
+
+        FilmController filmController;
+        ObjectMapper objectMapper;
+
+        @Override
+        protected DatasetSettings getSettings() {
+            return DatasetSettings.builder()
+                    .seed(SEED)
+                    .users(users)
+                    .films(films)
+                    .likesPerUser(likesPerUser)
+                    .friendsPerUser(0)
+                    .build();
+        }
+
+        @Override
+        protected void prepare() {
+            filmController = getBean(FilmController.class);
+            objectMapper = getBean(ObjectMapper.class);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+        //рост кучи за вызов: сумма пиков всех пулов (оценка сверху) и пик старого поколения
+        public long heapGrowthMb;
+        public long oldGrowthMb;
+        //занято после сборки мусора перед вызовом (база H2 в памяти, кэши и рейтинг приложения)
+        private long heapBefore;
+        private long oldBefore;
+
+        @Setup(Level.Invocation)
+        public void resetPeak() {
+            System.gc();
+            heapBefore = 0;
+            oldBefore = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                pool.resetPeakUsage();
+                if (pool.getType() == MemoryType.HEAP) {
+                    heapBefore += pool.getUsage().getUsed();
+                    if (isOld(pool)) {
+                        oldBefore += pool.getUsage().getUsed();
+                    }
+                }
+            }
+        }
+
+        void recordPeak() {
+            long heap = 0;
+            long old = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heap += pool.getPeakUsage().getUsed();
+                    if (isOld(pool)) {
+                        old += pool.getPeakUsage().getUsed();
+                    }
+                }
+            }
+            heapGrowthMb = (heap - heapBefore) >> 20;
+            oldGrowthMb = (old - oldBefore) >> 20;
+        }
+
+        private static boolean isOld(MemoryPoolMXBean pool) {
+            return pool.getName().contains("Old") || pool.getName().contains("Tenured");
+        }
+    }
+
+    //тело ответа сериализуется полностью, но никуда не пишется
+    @Benchmark
+    public void exportList(Export export, Heap heap) throws IOException {
+        export.objectMapper.writeValue(OutputStream.nullOutputStream(), export.filmController.getAllFilms(Map.of()));
+        heap.recordPeak();
+    }
+
+    @Benchmark
+    public void exportStream(Export export, Heap heap) throws IOException {
+        export.filmController.streamAllFilms().writeTo(OutputStream.nullOutputStream());
+        heap.recordPeak();
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.DbFilmStorage;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Запись фильмов и лайков:
+    обновление фильма с изменением одного жанра (в базу пишется только разница связей)
+    и постановка со снятием лайка - синхронно или через буфер отложенной записи (writeBehind).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmWriteBenchmark {
+    private static final long TOGGLED_GENRE = 6;
+
+    @State(Scope.Benchmark)
+    public static class Writes extends BenchmarkDatabase {
+        @Param({"false", "true"})
+        public boolean writeBehind;
+
+        DbFilmStorage filmStorage;
+        FilmService filmService;
+        Film film;
+        long step;
+
+        @Override
+        protected Map<String, Object> getProperties() {
+            return Map.of("filmorate.likes.write-behind.enabled", String.valueOf(writeBehind));
+        }
+
+        @Override
+        protected void prepare() {
+            filmStorage = getBean(DbFilmStorage.class);
+            filmService = getBean(FilmService.class);
+            film = filmStorage.get(1).orElseThrow();
+        }
+    }
+
+    @Benchmark
+    public boolean updateOneGenre(Writes writes) {
+        Film film = writes.film;
+        if (!film.getGenres().removeIf((genre) -> genre.getId() == TOGGLED_GENRE)) {
+            film.addGenre(Genre.builder().id(TOGGLED_GENRE).build());
+        }
+        return writes.filmStorage.update(film);
+    }
+
+    //каждый вызов ставит и снимает лайк очередной пары "фильм - пользователь"
+    @Benchmark
+    public boolean likeAndUnlike(Writes writes) {
+        long step = writes.step++;
+        long filmId = 1 + step % writes.films;
+        long userId = 1 + (step / writes.films) % writes.users;
+        writes.filmService.addLike(filmId, userId);
+        return writes.filmService.deleteLike(filmId, userId);
+    }
+}
@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Множество лайков фильма: LongIdSet против HashSet<Long>.
+    Заполнение идет по возрастанию id, как при чтении из базы; объем занимаемой памяти
+    виден по скорости выделения (gc.alloc.rate.norm профилировщика gc).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LikeSetBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Ids {
+        @Param({"100", "10000"})
+        public int size;
+
+        long[] ids;
+        long[] probes;
+        LongIdSet idSet;
+        Set<Long> hashSet;
+
+        @Setup
+        public void setup() {
+            Random random = new Random(size);
+            ids = new long[size];
+            long id = 0;
+            for (int i = 0; i < size; i++) {
+                id += 1 + random.nextInt(10);
+                ids[i] = id;
+            }
+            //примерно половина проверяемых id есть в множестве
+            probes = new long[size];
+            for (int i = 0; i < size; i++) {
+                probes[i] = random.nextBoolean() ? ids[random.nextInt(size)] : 1 + random.nextInt((int) id);
+            }
+            idSet = fillIdSet(this);
+            hashSet = fillHashSet(this);
+        }
+    }
+
+    @Benchmark
+    public LongIdSet buildLongIdSet(Ids ids) {
+        return fillIdSet(ids);
+    }
+
+    @Benchmark
+    public Set<Long> buildHashSet(Ids ids) {
+        return fillHashSet(ids);
+    }
+
+    @Benchmark
+    public int containsLongIdSet(Ids ids) {
+        int found = 0;
+        for (long probe : ids.probes) {
+            if (ids.idSet.containsId(probe)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int containsHashSet(Ids ids) {
+        int found = 0;
+        for (long probe : ids.probes) {
+            if (ids.hashSet.contains(probe)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static LongIdSet fillIdSet(Ids ids) {
+        LongIdSet set = new LongIdSet();
+        for (long id : ids.ids) {
+            set.addId(id);
+        }
+        return set;
+    }
+
+    private static Set<Long> fillHashSet(Ids ids) {
+        Set<Long> set = new HashSet<>();
+        for (long id : ids.ids) {
+            set.add(id);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.metrics.StatementCounter;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.DatasetSettings;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.DbLikeStorage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Чтение /films и /films/popular в зависимости от числа лайков на фильм.
+    Каждый пользователь лайкает каждый фильм, поэтому у всех FILMS фильмов ровно likesPerFilm лайков.
+    Рядом с пропускной способностью выводятся счетчики rows (строки результатов, прочитанные через JDBC)
+    и statements (SQL-запросы) в тех же единицах - на миллисекунду; на один вызов приходится
+    rows / ops строк, а время вызова в одном потоке - величина, обратная ops.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LikeVolumeBenchmark {
+    private static final int FILMS = 20;
+
+    @State(Scope.Benchmark)
+    public static class Likes extends BenchmarkApplication {
+        @Param({"1000", "10000", "100000"})
+        public int likesPerFilm;
+
+        //длина хита
+        @Param("10")
+        public int count;
+
+        FilmService filmService;
+        DbLikeStorage likeStorage;
+
+        @Override
+        protected DatasetSettings getSettings() {
+            return DatasetSettings.builder()
+                    .seed(SEED)
+                    .users(likesPerFilm)
+                    .films(FILMS)
+                    .likesPerUser(FILMS)
+                    .friendsPerUser(0)
+                    .skew(0)
+                    .build();
+        }
+
+        @Override
+        protected Map<String, Object> getProperties() {
+            return Map.of("filmorate.metrics.statements", "true"); //нужен счетчик строк
+        }
+
+        @Override
+        protected void prepare() {
+            filmService = getBean(FilmService.class);
+            likeStorage = getBean(DbLikeStorage.class);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Scanned {
+        public long rows;
+        public long statements;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            rows = 0;
+            statements = 0;
+        }
+
+        <T> T count(T result) {
+            rows += StatementCounter.getRows();
+            statements += StatementCounter.get();
+            return result;
+        }
+    }
+
+    //GET /films
+    @Benchmark
+    public List<Film> filmsGetAll(Likes likes, Scanned scanned) {
+        StatementCounter.reset();
+        return scanned.count(likes.filmService.getAll());
+    }
+
+    //GET /films/popular: порядок из рейтинга в памяти
+    @Benchmark
+    public List<Film> topFilmsFromLeaderboard(Likes likes, Scanned scanned) {
+        StatementCounter.reset();
+        return scanned.count(likes.filmService.getTopFilms((long) likes.count));
+    }
+
+    //хит из базы (по индексу like_count) для сравнения
+    @Benchmark
+    public List<Film> topFilmsFromDatabase(Likes likes, Scanned scanned) {
+        StatementCounter.reset();
+        return scanned.count(likes.likeStorage.getTopFilms((long) likes.count));
+    }
+}
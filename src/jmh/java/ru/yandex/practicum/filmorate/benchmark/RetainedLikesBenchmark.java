@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+    Удерживаемый объем реальных результатов getAll и getTopFilms на наборе BenchmarkDatabase
+    (skew = 1 - перекос по закону Ципфа, у первых фильмов лайков больше всего).
+    Объем измеряется по занятой куче после сборки мусора, пока результат достижим:
+    filmsKb - весь список фильмов, likesKb - только множества лайков из него (LongIdSet),
+    hashSetLikesKb - те же лайки, скопированные в HashSet<Long> (прежнее представление).
+    Список в прежнем представлении занимал бы filmsKb - likesKb + hashSetLikesKb.
+    Прямой запуск на 10 тыс. пользователей, 2000 фильмов и 20 лайков на пользователя (skew = 1):
+    getAll - 2,4 МБ, из них лайки 2,0 МБ против 12,6 МБ в HashSet; хит из 100 фильмов - 1,2 МБ против 7,4 МБ.
+    Один замер на запуск, поэтому счетчики не суммируются по итерациям.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseG1GC")
+public class RetainedLikesBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Films extends BenchmarkDatabase {
+        //длина хита
+        @Param("100")
+        public int count;
+
+        FilmService filmService;
+
+        @Override
+        protected void prepare() {
+            filmService = getBean(FilmService.class);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+        public long filmsKb;
+        public long likesKb;
+        public long hashSetLikesKb;
+
+        /*
+            результат, его лайки и их копии в HashSet отпускаются по очереди, а объем каждого
+            считается от последнего замера: чтение меняет и внутренние кэши базы, поэтому
+            занятое до чтения для отсчета не годится
+         */
+        void measure(Supplier<List<Film>> read) {
+            List<Film> films = read.get();
+            List<Set<Long>> likes = new ArrayList<>();
+            List<Set<Long>> hashSets = new ArrayList<>();
+            for (Film film : films) {
+                likes.add(film.getLikes());
+                hashSets.add(new HashSet<>(film.getLikes()));
+            }
+            long all = usedAfterGc();
+            Reference.reachabilityFence(films);
+            films = null;
+            long withoutFilms = usedAfterGc();
+            Reference.reachabilityFence(likes);
+            likes = null;
+            long hashSetsOnly = usedAfterGc();
+            Reference.reachabilityFence(hashSets);
+            hashSets = null;
+            long none = usedAfterGc();
+            filmsKb = (all - hashSetsOnly) >> 10;
+            likesKb = (withoutFilms - hashSetsOnly) >> 10;
+            hashSetLikesKb = (hashSetsOnly - none) >> 10;
+        }
+
+        private static long usedAfterGc() {
+            System.gc();
+            System.gc();
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+    }
+
+    //GET /films
+    @Benchmark
+    public void filmsGetAll(Films films, Retained retained) {
+        retained.measure(films.filmService::getAll);
+    }
+
+    //GET /films/popular
+    @Benchmark
+    public void topFilms(Films films, Retained retained) {
+        retained.measure(() -> films.filmService.getTopFilms((long) films.count));
+    }
+}
@@ -0,0 +1,119 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.DbBaseUserStorage;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Сборка пользователей из строк результата без обращения к базе:
+    строки запроса users + friends читаются один раз и затем многократно разбираются
+    методами User.mapFullRowToUser / User.storeFullRowForAll, а подтверждения дружбы
+    проставляются DbBaseUserStorage.getUsersWithAcknowledgedLinks.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowAssemblyBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Rows extends BenchmarkDatabase {
+        //строки запроса пользователей с друзьями (как в DbUserStorage.getAll)
+        SimpleResultSet userRows;
+        //пользователи с неподтвержденными связями и таблица подтверждений для них
+        Map<Long, User> subscribers;
+        Map<Long, List<Long>> acknowledged;
+        AssemblyStorage storage;
+
+        @Override
+        protected void prepare() {
+            userRows = new SimpleResultSet();
+            userRows.setAutoClose(false); //набор перечитывается в каждом вызове
+            userRows.addColumn("id", Types.BIGINT, 19, 0);
+            userRows.addColumn("users.id", Types.BIGINT, 19, 0);
+            userRows.addColumn("users.login", Types.VARCHAR, 40, 0);
+            userRows.addColumn("users.name", Types.VARCHAR, 40, 0);
+            userRows.addColumn("users.email", Types.VARCHAR, 40, 0);
+            userRows.addColumn("users.birthday", Types.DATE, 10, 0);
+            userRows.addColumn("friend_id", Types.BIGINT, 19, 0);
+            getBean(JdbcTemplate.class).query("select u.*, uf.friend_id from users as u " +
+                    "left join friends as uf on u.id = uf.user_id", (rs) -> {
+                userRows.addRow(rs.getLong("id"), rs.getLong("id"), rs.getString("login"), rs.getString("name"),
+                        rs.getString("email"), rs.getDate("birthday"), rs.getLong("friend_id"));
+            });
+            storage = new AssemblyStorage(getBean(NamedParameterJdbcTemplate.class));
+            try {
+                subscribers = mapUsers(this);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            acknowledged = storage.getAcknowledgedFriendsForSet("select id from users", Map.of());
+        }
+    }
+
+    //открывает бенчмарку защищенные методы сборки
+    static class AssemblyStorage extends DbBaseUserStorage {
+        AssemblyStorage(NamedParameterJdbcTemplate jdbcTemplate) {
+            super(jdbcTemplate);
+        }
+
+        @Override
+        protected Map<Long, List<Long>> getAcknowledgedFriendsForSet(String sqlSubquery, Map<String, ?> params) {
+            return super.getAcknowledgedFriendsForSet(sqlSubquery, params);
+        }
+
+        @Override
+        protected List<User> getUsersWithAcknowledgedLinks(Map<Long, User> subscribers, Map<Long, List<Long>> ack) {
+            return super.getUsersWithAcknowledgedLinks(subscribers, ack);
+        }
+    }
+
+    @Benchmark
+    public Map<Long, User> mapFullRowToUser(Rows rows) throws SQLException {
+        return mapUsers(rows);
+    }
+
+    @Benchmark
+    public Map<Long, User> storeFullRowForAll(Rows rows) throws SQLException {
+        Map<Long, User> users = new HashMap<>();
+        rows.userRows.beforeFirst();
+        while (rows.userRows.next()) {
+            User.storeFullRowForAll(rows.userRows, users);
+        }
+        return users;
+    }
+
+    @Benchmark
+    public List<User> getUsersWithAcknowledgedLinks(Rows rows) {
+        //подтверждения проставляются повторно в тех же объектах, что не меняет результат
+        return rows.storage.getUsersWithAcknowledgedLinks(new HashMap<>(rows.subscribers), rows.acknowledged);
+    }
+
+    private static Map<Long, User> mapUsers(Rows rows) throws SQLException {
+        Map<Long, User> users = new HashMap<>();
+        rows.userRows.beforeFirst();
+        while (rows.userRows.next()) {
+            User.mapFullRowToUser(rows.userRows, users);
+        }
+        return users;
+    }
+}
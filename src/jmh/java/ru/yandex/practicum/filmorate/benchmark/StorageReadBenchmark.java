@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.DbFilmStorage;
+import ru.yandex.practicum.filmorate.storage.DbFriendStorage;
+import ru.yandex.practicum.filmorate.storage.DbLikeStorage;
+import ru.yandex.practicum.filmorate.storage.DbUserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Чтение через хранилища (запросы к базе вместе со сборкой объектов):
+    выгрузка всех фильмов целиком и порциями, выборка фильмов по списку id,
+    все пользователи с друзьями, взаимные друзья пользователя, общие друзья,
+    хит фильмов из базы (по индексу like_count) и из рейтинга в памяти.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageReadBenchmark {
+    private static final int CHUNK_SIZE = 500;
+
+    @State(Scope.Benchmark)
+    public static class Storages extends BenchmarkDatabase {
+        //размер выборки по списку id и длина хита
+        @Param("100")
+        public int count;
+
+        DbFilmStorage filmStorage;
+        DbLikeStorage likeStorage;
+        DbUserStorage userStorage;
+        DbFriendStorage friendStorage;
+        FilmService filmService;
+        List<Long> filmIds;
+
+        @Override
+        protected void prepare() {
+            filmStorage = getBean(DbFilmStorage.class);
+            likeStorage = getBean(DbLikeStorage.class);
+            userStorage = getBean(DbUserStorage.class);
+            friendStorage = getBean(DbFriendStorage.class);
+            filmService = getBean(FilmService.class);
+            Random random = new Random(count);
+            filmIds = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                filmIds.add(1L + random.nextInt(films));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Film> filmGetAll(Storages storages) {
+        return storages.filmStorage.getAll();
+    }
+
+    @Benchmark
+    public void filmForEach(Storages storages, Blackhole blackhole) {
+        storages.filmStorage.forEach(CHUNK_SIZE, blackhole::consume);
+    }
+
+    @Benchmark
+    public List<Film> filmGetByIds(Storages storages) {
+        return storages.filmStorage.getByIds(storages.filmIds);
+    }
+
+    @Benchmark
+    public List<User> userGetAll(Storages storages) {
+        return storages.userStorage.getAll();
+    }
+
+    @Benchmark
+    public List<User> acknowledgedFriends(Storages storages) {
+        return storages.friendStorage.getAcknowledgedFriends(1);
+    }
+
+    @Benchmark
+    public List<User> commonFriends(Storages storages) {
+        return storages.friendStorage.getCommonFriends(1, 2);
+    }
+
+    @Benchmark
+    public List<Film> topFilmsFromDatabase(Storages storages) {
+        return storages.likeStorage.getTopFilms((long) storages.count);
+    }
+
+    @Benchmark
+    public List<Film> topFilmsFromLeaderboard(Storages storages) {
+        return storages.filmService.getTopFilms((long) storages.count);
+    }
+}
@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.FriendStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Цена замера длительности методов хранилищ (filmorate.metrics.latency):
+    одни и те же вызовы с замером и без него - от чтения из памяти (жанры, фильм из кэша сервиса)
+    до запросов к базе (фильмы по списку id, общие друзья).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageTimingBenchmark {
+    private static final int ID_COUNT = 10;
+
+    @State(Scope.Benchmark)
+    public static class Timing extends BenchmarkDatabase {
+        @Param({"false", "true"})
+        public boolean latency;
+
+        FilmStorage filmStorage;
+        FriendStorage friendStorage;
+        GenreStorage genreStorage;
+        FilmService filmService;
+        List<Long> filmIds;
+        long step;
+
+        @Override
+        protected Map<String, Object> getProperties() {
+            return Map.of("filmorate.metrics.latency", String.valueOf(latency));
+        }
+
+        @Override
+        protected void prepare() {
+            filmStorage = getBean(FilmStorage.class);
+            friendStorage = getBean(FriendStorage.class);
+            genreStorage = getBean(GenreStorage.class);
+            filmService = getBean(FilmService.class);
+            filmIds = new ArrayList<>();
+            for (long id = 1; id <= ID_COUNT; id++) {
+                filmIds.add(id);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Genre> genreGetAll(Timing timing) {
+        return timing.genreStorage.getAllGenres();
+    }
+
+    //фильмы читаются по кругу из первой сотни, которая после прогрева лежит в кэше сервиса
+    @Benchmark
+    public Film filmServiceGet(Timing timing) {
+        return timing.filmService.get(1 + timing.step++ % 100);
+    }
+
+    @Benchmark
+    public List<Film> filmGetByIds(Timing timing) {
+        return timing.filmStorage.getByIds(timing.filmIds);
+    }
+
+    @Benchmark
+    public List<User> commonFriends(Timing timing) {
+        return timing.friendStorage.getCommonFriends(1, 2);
+    }
+}
@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+//кэши собранных объектов (имя бина - имя кэша в статистике)
+@Configuration
+public class CacheConfig {
+
+    //вес фильма - число его связей: ограничивает память, занятую фильмами с большим числом лайков
+    @Bean
+    public ObjectCache<Film> filmCache(@Value("${filmorate.cache.films.max-size:10000}") int maxSize,
+                                       @Value("${filmorate.cache.films.max-weight:1000000}") long maxWeight) {
+        return new ObjectCache<>(maxSize, maxWeight, Film::weight, Film::copy);
+    }
+
+    //вес пользователя - число его дружеских связей
+    @Bean
+    public ObjectCache<User> userCache(@Value("${filmorate.cache.users.max-size:10000}") int maxSize,
+                                       @Value("${filmorate.cache.users.max-weight:1000000}") long maxWeight) {
+        return new ObjectCache<>(maxSize, maxWeight, User::weight, User::copy);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class CacheStats {
+    //число объектов в кэше
+    private long size;
+    //суммарный вес объектов
+    private long weight;
+    //число чтений из кэша
+    private long hits;
+    //число чтений из базы
+    private long misses;
+    //число вытесненных объектов
+    private long evictions;
+    //число удалений по изменению объекта
+    private long invalidations;
+}
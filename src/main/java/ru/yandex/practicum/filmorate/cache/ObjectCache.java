@@ -0,0 +1,233 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/*
+    Ограниченный потокобезопасный кэш объектов по идентификатору с чтением через кэш.
+    Ограничивается и число объектов, и их суммарный вес; вытеснение - по алгоритму "второго шанса"
+    (объект, к которому обращались после помещения в кэш, переживает один проход вытеснения).
+    Загрузка объекта из базы защищена от гонки с записью: перед чтением в кэш кладется метка,
+    и прочитанный объект помещается на ее место, только если метку не удалил invalidate.
+    Поэтому после завершения записи (и вызова invalidate) старая версия в кэш уже не попадет.
+    Объекты изменяемые, поэтому в кэше хранится копия, и наружу тоже отдаются копии.
+ */
+public class ObjectCache<V> {
+    private final int maxSize;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final UnaryOperator<V> copier;
+    //значение - Entry (объект) или Loading (метка идущей загрузки)
+    private final ConcurrentMap<Long, Object> map = new ConcurrentHashMap<>();
+    //очередь на вытеснение в порядке помещения в кэш
+    private final Queue<Entry<V>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong weight = new AtomicLong();
+    //число удаленных объектов, еще остающихся в очереди
+    private final AtomicLong stale = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ObjectCache(int maxSize, long maxWeight, ToLongFunction<V> weigher, UnaryOperator<V> copier) {
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.copier = copier;
+    }
+
+    ////////////////////////////////// Чтение ////////////////////////////////
+
+    //возвращает объект из кэша, а при его отсутствии - загружает и запоминает
+    @SuppressWarnings("unchecked")
+    public Optional<V> get(long key, LongFunction<Optional<V>> loader) {
+        Object cached = map.get(key);
+        if (cached instanceof Entry) {
+            Entry<V> entry = (Entry<V>) cached;
+            entry.accessed = true;
+            hits.increment();
+            return Optional.of(copier.apply(entry.value));
+        }
+        misses.increment();
+        //объект уже загружается другим потоком - читаем сами, не трогая кэш
+        Loading loading = new Loading();
+        if ((cached != null) || (map.putIfAbsent(key, loading) != null)) {
+            return loader.apply(key);
+        }
+        Optional<V> value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException e) {
+            map.remove(key, loading);
+            throw e;
+        }
+        if (value.isEmpty()) { //отсутствие объекта не кэшируется
+            map.remove(key, loading);
+            return value;
+        }
+        install(key, loading, value.get());
+        return value;
+    }
+
+    /*
+        возвращает объекты с заданными ключами: найденные в кэше - из кэша, остальные загружаются
+        одним вызовом loader (он возвращает только существующие объекты) и запоминаются;
+        в результате нет ключей отсутствующих объектов
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Long, V> getAll(Collection<Long> keys, Function<List<Long>, Map<Long, V>> loader) {
+        Map<Long, V> result = new HashMap<>();
+        List<Long> missed = new ArrayList<>();
+        Map<Long, Loading> loadings = new HashMap<>();
+        for (Long key : new LinkedHashSet<>(keys)) {
+            Object cached = map.get(key);
+            if (cached instanceof Entry) {
+                Entry<V> entry = (Entry<V>) cached;
+                entry.accessed = true;
+                hits.increment();
+                result.put(key, copier.apply(entry.value));
+                continue;
+            }
+            misses.increment();
+            missed.add(key);
+            //метку ставим только там, где не идет чужая загрузка
+            Loading loading = new Loading();
+            if ((cached == null) && (map.putIfAbsent(key, loading) == null)) {
+                loadings.put(key, loading);
+            }
+        }
+        if (missed.isEmpty()) {
+            return result;
+        }
+        Map<Long, V> loaded;
+        try {
+            loaded = loader.apply(missed);
+        } catch (RuntimeException e) {
+            loadings.forEach(map::remove);
+            throw e;
+        }
+        for (Long key : missed) {
+            V value = loaded.get(key);
+            Loading loading = loadings.get(key);
+            if (value == null) { //отсутствие объекта не кэшируется
+                if (loading != null) {
+                    map.remove(key, loading);
+                }
+                continue;
+            }
+            result.put(key, value);
+            if (loading != null) {
+                install(key, loading, value);
+            }
+        }
+        return result;
+    }
+
+    //помещает загруженный объект на место метки, если за время загрузки ее не удалил invalidate
+    private void install(long key, Loading loading, V value) {
+        Entry<V> entry = new Entry<>(key, copier.apply(value), weigher.applyAsLong(value));
+        if (map.replace(key, loading, entry)) {
+            size.incrementAndGet();
+            weight.addAndGet(entry.weight);
+            queue.add(entry);
+            evict();
+        }
+    }
+
+    ///////////////////////////////// Удаление ///////////////////////////////
+
+    //убирает объект из кэша (вызывается после фиксации изменения объекта в базе)
+    public void invalidate(long key) {
+        Object removed = map.remove(key);
+        invalidations.increment();
+        if (removed instanceof Entry) {
+            release((Entry<?>) removed);
+            //удаленные объекты не должны копиться в очереди, пока нет вытеснения
+            if (stale.incrementAndGet() > size.get() + 64) {
+                stale.set(0);
+                queue.removeIf((entry) -> map.get(entry.key) != entry);
+            }
+        }
+    }
+
+    //очищает кэш целиком
+    public void clear() {
+        for (Long key : map.keySet()) {
+            invalidate(key);
+        }
+    }
+
+    //////////////////////////////// Статистика //////////////////////////////
+
+    public CacheStats getStats() {
+        return new CacheStats(size.get(), weight.get(), hits.sum(), misses.sum(),
+                evictions.sum(), invalidations.sum());
+    }
+
+    //число удаленных объектов в очереди (для тестов)
+    long getStaleCount() {
+        return stale.get();
+    }
+
+    //////////////////////////////// Вытеснение //////////////////////////////
+
+    private void evict() {
+        //каждый объект очереди получает не более одного второго шанса за проход
+        long budget = 2 * size.get() + 1;
+        while (((size.get() > maxSize) || (weight.get() > maxWeight)) && (budget-- > 0)) {
+            Entry<V> entry = queue.poll();
+            if (entry == null) {
+                return;
+            }
+            if (map.get(entry.key) != entry) { //объект уже удален или заменен
+                //он больше не в очереди (счетчик мог обнулить invalidate, поэтому не уходим ниже нуля)
+                stale.updateAndGet((count) -> (count > 0) ? count - 1 : 0);
+                continue;
+            }
+            if (entry.accessed) { //к объекту обращались - оставляем его
+                entry.accessed = false;
+                queue.add(entry);
+            } else if (map.remove(entry.key, entry)) {
+                release(entry);
+                evictions.increment();
+            }
+        }
+    }
+
+    private void release(Entry<?> entry) {
+        size.decrementAndGet();
+        weight.addAndGet(-entry.weight);
+    }
+
+    private static final class Entry<V> {
+        private final long key;
+        private final V value;
+        private final long weight;
+        private volatile boolean accessed;
+
+        private Entry(long key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Loading {
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendLink;
+import ru.yandex.practicum.filmorate.model.LikeLink;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import javax.validation.constraints.Size;
+import java.util.List;
+
+/*
+    Пакетная запись для загрузки данных.
+    Элементы проверяются по отдельности: ответ содержит результат для каждого элемента
+    (http-код, который вернул бы одиночный запрос), ошибка одного элемента не мешает остальным.
+ */
+@RestController
+@Validated
+public class BatchController {
+    private static final int MAX_BATCH_SIZE = 10000;
+    private final FilmService filmService;
+    private final UserService userService;
+
+    @Autowired
+    public BatchController(FilmService filmService, UserService userService) {
+        this.filmService = filmService;
+        this.userService = userService;
+    }
+
+    //пакетное добавление фильмов
+    @PostMapping("/films/batch")
+    public List<BatchResult> createFilms(@RequestBody @Size(max = MAX_BATCH_SIZE) List<Film> films) {
+        return filmService.createAll(films);
+    }
+
+    //пакетное добавление лайков
+    @PostMapping("/likes/batch")
+    public List<BatchResult> addLikes(@RequestBody @Size(max = MAX_BATCH_SIZE) List<LikeLink> likes) {
+        return filmService.addLikes(likes);
+    }
+
+    //пакетное добавление друзей
+    @PostMapping("/friends/batch")
+    public List<BatchResult> addFriends(@RequestBody @Size(max = MAX_BATCH_SIZE) List<FriendLink> friends) {
+        return userService.addFriends(friends);
+    }
+}
@@ -1,53 +1,134 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
+import ru.yandex.practicum.filmorate.model.IdLookup;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import javax.validation.constraints.Size;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping(value = "/films")
 @Validated
 public class FilmController {
+    private static final int MAX_PAGE_SIZE = 1000;
     private final FilmService service;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public FilmController(FilmService service) {
+    public FilmController(FilmService service, ObjectMapper objectMapper) {
         this.service = service;
+        this.objectMapper = objectMapper;
     }
 
     ///////////////////////////// Получение данных ///////////////////////////
 
-    //получение всех фильмов
+    //получение всех фильмов (сюда же попадают запросы с несколькими режимами выдачи - они отклоняются)
     @GetMapping
-    public List<Film> getAllFilms() {
+    public List<Film> getAllFilms(@RequestParam Map<String, String> params) {
+        QueryModes.rejectCombined(params, "stream=true", "limit", "ids", "view=summary");
         return service.getAll();
     }
 
+    //потоковая выгрузка всех фильмов
+    @GetMapping(params = {"stream=true", "!limit", "!ids", "!view"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody streamAllFilms() {
+        return StreamingJson.array(objectMapper, service::forEach);
+    }
+
+    //постраничное получение фильмов (курсор after - id последнего фильма предыдущей страницы)
+    @GetMapping(params = {"limit", "stream!=true", "!ids", "!view"})
+    public Page<Film> getFilmsPage(@RequestParam(defaultValue = "0") @PositiveOrZero long after,
+                                   @RequestParam @Positive @Max(MAX_PAGE_SIZE) int limit) {
+        return service.getPage(after, limit);
+    }
+
+    //получение фильмов по списку идентификаторов (ids=1,2,3): найденные в порядке списка и отсутствующие id
+    @GetMapping(params = {"ids", "stream!=true", "!limit", "!view"})
+    public IdLookup<Film> getFilmsByIds(@RequestParam @Size(max = MAX_PAGE_SIZE) List<Long> ids) {
+        return service.getByIds(ids);
+    }
+
     //получение фильма по идентификатору
     @GetMapping(value = "/{id}")
     public Film getFilm(@PathVariable("id") long filmId) {
         return service.get(filmId);
     }
 
-    //получение лайков фильма по идентификатору
+    //получение лайков фильма по идентификатору (запросы сразу с limit и stream=true отклоняются)
     @GetMapping(value = "/{id}/like")
-    public List<User> getLikes(@PathVariable("id") long filmId) {
+    public List<User> getLikes(@PathVariable("id") long filmId, @RequestParam Map<String, String> params) {
+        QueryModes.rejectCombined(params, "stream=true", "limit");
         return service.getLikes(filmId);
     }
 
+    //постраничное получение лайков (курсор after - id последнего пользователя предыдущей страницы)
+    @GetMapping(value = "/{id}/like", params = {"limit", "stream!=true"})
+    public Page<User> getLikesPage(@PathVariable("id") long filmId,
+                                   @RequestParam(defaultValue = "0") @PositiveOrZero long after,
+                                   @RequestParam @Positive @Max(MAX_PAGE_SIZE) int limit) {
+        return service.getLikesPage(filmId, after, limit);
+    }
+
+    //потоковая выгрузка всех лайков фильма
+    @GetMapping(value = "/{id}/like", params = {"stream=true", "!limit"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody streamLikes(@PathVariable("id") long filmId) {
+        return StreamingJson.array(objectMapper, service.streamLikes(filmId));
+    }
+
+    //число лайков фильма
+    @GetMapping(value = "/{id}/like/count")
+    public int getLikeCount(@PathVariable("id") long filmId) {
+        return service.getLikeCount(filmId);
+    }
+
     //получение топовых фильмов
     @GetMapping(value = "/popular")
     public List<Film> getTopFilms(@RequestParam(defaultValue = "10") @Positive long count) {
         return service.getTopFilms(count);
     }
 
+    ////////////////////// Краткое представление (view=summary) ///////////////
+
+    //все фильмы с числом лайков вместо их списка
+    @GetMapping(params = {"view=summary", "stream!=true", "!limit", "!ids"})
+    public List<FilmSummary> getAllSummaries() {
+        return service.getAllSummaries();
+    }
+
+    //постраничное получение фильмов с числом лайков
+    @GetMapping(params = {"view=summary", "limit", "stream!=true", "!ids"})
+    public Page<FilmSummary> getSummaryPage(@RequestParam(defaultValue = "0") @PositiveOrZero long after,
+                                            @RequestParam @Positive @Max(MAX_PAGE_SIZE) int limit) {
+        return service.getSummaryPage(after, limit);
+    }
+
+    //фильм с числом лайков
+    @GetMapping(value = "/{id}", params = "view=summary")
+    public FilmSummary getSummary(@PathVariable("id") long filmId) {
+        return service.getSummary(filmId);
+    }
+
+    //топовые фильмы с числом лайков
+    @GetMapping(value = "/popular", params = "view=summary")
+    public List<FilmSummary> getTopSummaries(@RequestParam(defaultValue = "10") @Positive long count) {
+        return service.getTopSummaries(count);
+    }
+
     ////////////////////////////// Передача данных ///////////////////////////
 
     @PostMapping
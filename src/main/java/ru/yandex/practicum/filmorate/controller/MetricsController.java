@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.cache.CacheStats;
+import ru.yandex.practicum.filmorate.cache.ObjectCache;
+import ru.yandex.practicum.filmorate.metrics.LatencyHistogram;
+import ru.yandex.practicum.filmorate.metrics.LatencyStatistics;
+import ru.yandex.practicum.filmorate.metrics.StatementStatistics;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+@RestController
+@RequestMapping(value = "/metrics")
+public class MetricsController {
+    private final StatementStatistics statementStatistics;
+    private final LatencyStatistics storageLatency;
+    private final LatencyStatistics endpointLatency;
+    private final Map<String, ObjectCache<?>> caches;
+
+    @Autowired
+    public MetricsController(StatementStatistics statementStatistics,
+                             @Qualifier("storageLatency") LatencyStatistics storageLatency,
+                             @Qualifier("endpointLatency") LatencyStatistics endpointLatency,
+                             Map<String, ObjectCache<?>> caches) {
+        this.statementStatistics = statementStatistics;
+        this.storageLatency = storageLatency;
+        this.endpointLatency = endpointLatency;
+        this.caches = caches;
+    }
+
+    //число SQL-запросов по конечным точкам
+    @GetMapping(value = "/statements")
+    public Map<String, StatementStatistics.Snapshot> getStatements() {
+        return statementStatistics.getAll();
+    }
+
+    //сброс накопленной статистики
+    @DeleteMapping(value = "/statements")
+    public void resetStatements() {
+        statementStatistics.reset();
+    }
+
+    //длительности методов хранилищ ("Класс.метод" -> квантили в мкс и число строк)
+    @GetMapping(value = "/latency/storage")
+    public Map<String, LatencyHistogram.Snapshot> getStorageLatency() {
+        return storageLatency.getAll();
+    }
+
+    //длительности обработки запросов по конечным точкам
+    @GetMapping(value = "/latency/endpoints")
+    public Map<String, LatencyHistogram.Snapshot> getEndpointLatency() {
+        return endpointLatency.getAll();
+    }
+
+    //сброс накопленных длительностей
+    @DeleteMapping(value = "/latency")
+    public void resetLatency() {
+        storageLatency.reset();
+        endpointLatency.reset();
+    }
+
+    //состояние кэшей (имя кэша -> счетчики)
+    @GetMapping(value = "/caches")
+    public Map<String, CacheStats> getCaches() {
+        Map<String, CacheStats> stats = new TreeMap<>();
+        caches.forEach((name, cache) -> stats.put(name, cache.getStats()));
+        return stats;
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import ru.yandex.practicum.filmorate.exception.IncorrectParameterFormatException;
+
+import java.util.Map;
+
+/*
+    Режимы выдачи коллекции (stream=true, limit, ids, view=summary) взаимоисключающие:
+    обработчик каждого режима исключает параметры остальных (params = "!limit" и т.п.),
+    поэтому запрос с несколькими режимами попадает в обработчик без параметров и отклоняется здесь.
+ */
+class QueryModes {
+    private QueryModes() {
+    }
+
+    //отклоняет запрос, в котором задан хотя бы один из режимов (вида "limit" или "stream=true")
+    static void rejectCombined(Map<String, String> params, String... modes) {
+        for (String mode : modes) {
+            int separator = mode.indexOf('=');
+            String name = (separator < 0) ? mode : mode.substring(0, separator);
+            String value = params.get(name);
+            if ((value != null) && ((separator < 0) || value.equals(mode.substring(separator + 1)))) {
+                throw new IncorrectParameterFormatException("Несовместимые параметры запроса: ",
+                        String.join(", ", params.keySet()));
+            }
+        }
+    }
+}
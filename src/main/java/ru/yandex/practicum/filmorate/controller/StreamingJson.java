@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+//потоковая выдача json-массива: каждый объект пишется в ответ сразу после чтения из базы
+class StreamingJson {
+    private StreamingJson() {
+    }
+
+    //source - источник, передающий объекты по одному в заданного потребителя
+    static <T> StreamingResponseBody array(ObjectMapper mapper, Consumer<Consumer<T>> source) {
+        return (output) -> {
+            try (SequenceWriter writer = mapper.writer().writeValuesAsArray(output)) {
+                source.accept((object) -> {
+                    try {
+                        writer.write(object);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+    }
+}
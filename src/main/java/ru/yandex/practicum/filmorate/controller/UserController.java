@@ -1,31 +1,66 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.IdLookup;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import javax.validation.constraints.Size;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/users")
+@Validated
 public class UserController {
+    private static final int MAX_PAGE_SIZE = 1000;
     private final UserService service;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public UserController(UserService service) {
+    public UserController(UserService service, ObjectMapper objectMapper) {
         this.service = service;
+        this.objectMapper = objectMapper;
     }
 
     ///////////////////////////// Получение данных ///////////////////////////
 
-    //получение всех пользователей
+    //получение всех пользователей (сюда же попадают запросы с несколькими режимами выдачи - они отклоняются)
     @GetMapping
-    public List<User> getAllUsers() {
+    public List<User> getAllUsers(@RequestParam Map<String, String> params) {
+        QueryModes.rejectCombined(params, "stream=true", "limit", "ids");
         return service.getAll();
     }
 
+    //потоковая выгрузка всех пользователей
+    @GetMapping(params = {"stream=true", "!limit", "!ids"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody streamAllUsers() {
+        return StreamingJson.array(objectMapper, service::forEach);
+    }
+
+    //постраничное получение пользователей (курсор after - id последнего пользователя предыдущей страницы)
+    @GetMapping(params = {"limit", "stream!=true", "!ids"})
+    public Page<User> getUsersPage(@RequestParam(defaultValue = "0") @PositiveOrZero long after,
+                                   @RequestParam @Positive @Max(MAX_PAGE_SIZE) int limit) {
+        return service.getPage(after, limit);
+    }
+
+    //получение пользователей по списку идентификаторов (ids=1,2,3): найденные в порядке списка и отсутствующие id
+    @GetMapping(params = {"ids", "stream!=true", "!limit"})
+    public IdLookup<User> getUsersByIds(@RequestParam @Size(max = MAX_PAGE_SIZE) List<Long> ids) {
+        return service.getByIds(ids);
+    }
+
     //получение пользователя по идентификатору
     @GetMapping(value = "/{id}")
     public User getUser(@PathVariable("id") long userId) {
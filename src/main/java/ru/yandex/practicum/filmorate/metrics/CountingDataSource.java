@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/*
+    Источник данных, отдающий соединения, чьи запросы учитываются в StatementCounter.
+    Соединения, запросы и их результаты оборачиваются динамическими прокси, поэтому работает с любым пулом;
+    строкой результата считается каждый успешный переход next().
+ */
+public class CountingDataSource extends DelegatingDataSource {
+
+    public CountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    ///////////////////////////////// Обертки ////////////////////////////////
+
+    private static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(CountingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement) { //createStatement, prepareStatement, prepareCall
+                        return wrap((Statement) result, method.getReturnType());
+                    }
+                    return result;
+                });
+    }
+
+    //оборачивает запрос, сохраняя его интерфейс (Statement, PreparedStatement или CallableStatement)
+    private static Object wrap(Statement statement, Class<?> type) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                StatementCounter.increment();
+            }
+            Object result = invoke(statement, method, args);
+            if (result instanceof ResultSet) { //executeQuery, getResultSet
+                return wrap((ResultSet) result);
+            }
+            return result;
+        };
+        return Proxy.newProxyInstance(CountingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static ResultSet wrap(ResultSet resultSet) {
+        return (ResultSet) Proxy.newProxyInstance(CountingDataSource.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    Object result = invoke(resultSet, method, args);
+                    if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                        StatementCounter.incrementRows();
+                    }
+                    return result;
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) { //наружу отдаем исходное исключение драйвера
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/*
+    Замеряет длительность обработки http-запросов по конечным точкам.
+    Для потоковой выдачи учитывается только время до начала асинхронной записи тела.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.metrics.latency", havingValue = "true", matchIfMissing = true)
+public class EndpointTimingFilter extends OncePerRequestFilter {
+    private final LatencyStatistics statistics;
+
+    @Autowired
+    public EndpointTimingFilter(@Qualifier("endpointLatency") LatencyStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            statistics.record(Endpoints.getName(request), System.nanoTime() - start, 0);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+
+//имя конечной точки для статистики
+final class Endpoints {
+
+    private Endpoints() {
+    }
+
+    //метод и шаблон пути, чтобы /films/1 и /films/2 попадали в одну строку
+    static String getName(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + ((pattern != null) ? pattern : request.getRequestURI());
+    }
+}
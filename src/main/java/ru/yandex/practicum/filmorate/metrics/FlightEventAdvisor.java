@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.StaticMethodMatcherPointcutAdvisor;
+import org.springframework.core.Ordered;
+import org.springframework.util.ClassUtils;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.Storable;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+    События JFR о вызовах методов хранилищ (StorageCallEvent) и открытых операций сервисов (ServiceCallEvent).
+    Хранилища выбираются так же, как для гистограмм длительности (StorageTimingAdvisor).
+    Пока запись JFR не идет, событие выключено и вызов обходится проверкой isEnabled;
+    поля события заполняются только для событий, которые будут записаны (с учетом порога длительности).
+    В идентификаторы попадают числовые аргументы и id фильмов (пользователей), для коллекций -
+    первые MAX_IDS значений; числовой аргумент может быть и не идентификатором (например, число фильмов в рейтинге).
+ */
+public class FlightEventAdvisor extends StaticMethodMatcherPointcutAdvisor implements MethodInterceptor {
+    private static final Set<Class<?>> SERVICES = Set.of(FilmService.class, UserService.class);
+    private static final int MAX_IDS = 10;
+    //имена операций по классам и методам (чтобы не строить их при каждом вызове);
+    //метод по умолчанию из интерфейса (Storage.forEach) один для всех хранилищ, поэтому нужен и класс
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, String>> operations = new ConcurrentHashMap<>();
+
+    public FlightEventAdvisor() {
+        setAdvice(this);
+        setOrder(Ordered.HIGHEST_PRECEDENCE + 1); //внутри замера длительности, снаружи транзакции
+    }
+
+    ////////////////////////////// Выбор методов /////////////////////////////
+
+    @Override
+    public boolean matches(Method method, Class<?> targetClass) {
+        return isServiceMethod(method) || StorageTimingAdvisor.isStorageMethod(method, targetClass);
+    }
+
+    private static boolean isServiceMethod(Method method) {
+        return Modifier.isPublic(method.getModifiers()) && !method.isBridge()
+                && SERVICES.contains(method.getDeclaringClass());
+    }
+
+    ////////////////////////////////// События ///////////////////////////////
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        OperationEvent event = isServiceMethod(method) ? new ServiceCallEvent() : new StorageCallEvent();
+        if (!event.isEnabled()) {
+            return invocation.proceed();
+        }
+        Object result = null;
+        event.begin();
+        try {
+            result = invocation.proceed();
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                Class<?> targetClass = invocation.getThis().getClass();
+                event.operation = operations
+                        .computeIfAbsent(targetClass, (key) -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(method, (key) ->
+                                ClassUtils.getUserClass(targetClass).getSimpleName() + "." + key.getName());
+                event.ids = formatIds(invocation.getArguments());
+                event.rows = StorageTimingAdvisor.countRows(result);
+                event.commit();
+            }
+        }
+    }
+
+    //идентификаторы из аргументов через запятую (не больше MAX_IDS, остаток - числом)
+    static String formatIds(Object[] args) {
+        IdList ids = new IdList();
+        for (Object arg : args) {
+            if (arg instanceof long[]) {
+                for (long id : (long[]) arg) {
+                    ids.add(id);
+                }
+            } else if (arg instanceof Collection) {
+                for (Object item : (Collection<?>) arg) {
+                    ids.add(getId(item));
+                }
+            } else {
+                ids.add(getId(arg));
+            }
+        }
+        return ids.toString();
+    }
+
+    private static Long getId(Object value) {
+        if ((value instanceof Long) || (value instanceof Integer)) {
+            return ((Number) value).longValue();
+        } else if (value instanceof Storable) {
+            return ((Storable) value).getId();
+        }
+        return null;
+    }
+
+    private static final class IdList {
+        private final StringBuilder builder = new StringBuilder();
+        private int count;
+        private int skipped;
+
+        void add(Long id) {
+            if (id == null) {
+                return;
+            }
+            if (count == MAX_IDS) {
+                skipped++;
+                return;
+            }
+            if (count++ > 0) {
+                builder.append(',');
+            }
+            builder.append(id);
+        }
+
+        @Override
+        public String toString() {
+            return (skipped == 0) ? builder.toString() : builder + " (+" + skipped + ")";
+        }
+    }
+}
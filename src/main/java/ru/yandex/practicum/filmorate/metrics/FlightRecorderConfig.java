@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+
+//события JFR о вызовах хранилищ и сервисов (включаются профилем jfr: filmorate.metrics.jfr=true)
+@Configuration
+@Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+public class FlightRecorderConfig {
+
+    //инфраструктурная роль нужна, чтобы совет подхватил тот же автопрокси, что применяет @Transactional
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    @ConditionalOnProperty(name = "filmorate.metrics.jfr", havingValue = "true")
+    public FlightEventAdvisor flightEventAdvisor() {
+        return new FlightEventAdvisor();
+    }
+}
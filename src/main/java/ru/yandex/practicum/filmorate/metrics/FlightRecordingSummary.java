@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Сводка записи JFR: таблица длительностей по операциям хранилищ и сервисов (события StorageCallEvent
+    и ServiceCallEvent), упорядоченная по суммарному времени. Запуск:
+    java -cp target/classes ru.yandex.practicum.filmorate.metrics.FlightRecordingSummary recording.jfr
+ */
+public final class FlightRecordingSummary {
+
+    private FlightRecordingSummary() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Использование: FlightRecordingSummary <файл записи .jfr>");
+            System.exit(1);
+        }
+        System.out.print(format(summarize(Path.of(args[0]))));
+    }
+
+    //гистограммы длительностей (мкс) по операциям из событий записи
+    public static Map<String, LatencyHistogram.Snapshot> summarize(Path recording) throws IOException {
+        LatencyStatistics statistics = new LatencyStatistics();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String type = event.getEventType().getName();
+                if (type.equals(StorageCallEvent.NAME) || type.equals(ServiceCallEvent.NAME)) {
+                    statistics.record(event.getString("operation"), event.getDuration().toNanos(),
+                            event.getLong("rows"));
+                }
+            }
+        }
+        return statistics.getAll();
+    }
+
+    //таблица по операциям, первыми идут занявшие больше всего времени
+    public static String format(Map<String, LatencyHistogram.Snapshot> operations) {
+        List<Map.Entry<String, LatencyHistogram.Snapshot>> rows = new ArrayList<>(operations.entrySet());
+        rows.sort(Comparator.comparingLong(
+                (Map.Entry<String, LatencyHistogram.Snapshot> row) -> row.getValue().getTotalNanos()).reversed());
+        int width = "Операция".length();
+        for (Map.Entry<String, LatencyHistogram.Snapshot> row : rows) {
+            width = Math.max(width, row.getKey().length());
+        }
+        String pattern = "%-" + width + "s %10s %10s %12s %10s %10s %10s %10s %10s%n";
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(pattern, "Операция", "Вызовов", "Строк", "Всего, мс",
+                "Сред, мкс", "p50", "p90", "p99", "Макс"));
+        for (Map.Entry<String, LatencyHistogram.Snapshot> row : rows) {
+            LatencyHistogram.Snapshot snapshot = row.getValue();
+            builder.append(String.format(pattern, row.getKey(), snapshot.getCount(), snapshot.getRows(),
+                    snapshot.getTotalNanos() / 1_000_000, snapshot.getMean(), snapshot.getP50(), snapshot.getP90(),
+                    snapshot.getP99(), snapshot.getMax()));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+
+//гистограммы длительностей методов хранилищ и конечных точек (замеры отключаются filmorate.metrics.latency=false)
+@Configuration
+@Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+public class LatencyConfig {
+
+    //создается раньше остальных бинов вместе с советом
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public LatencyStatistics storageLatency() {
+        return new LatencyStatistics();
+    }
+
+    @Bean
+    public LatencyStatistics endpointLatency() {
+        return new LatencyStatistics();
+    }
+
+    //инфраструктурная роль нужна, чтобы совет подхватил тот же автопрокси, что применяет @Transactional
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    @ConditionalOnProperty(name = "filmorate.metrics.latency", havingValue = "true", matchIfMissing = true)
+    public StorageTimingAdvisor storageTimingAdvisor(@Qualifier("storageLatency") LatencyStatistics statistics) {
+        return new StorageTimingAdvisor(statistics);
+    }
+}
@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Гистограмма длительностей без блокировок: логарифмические интервалы,
+    каждая степень двойки наносекунд делится на 8 равных частей.
+    Запись - несколько атомарных сложений (число вызовов - сумма по интервалам);
+    квантиль определяется с точностью до ширины интервала (не хуже 1/8 значения)
+    и берется по верхней границе интервала.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BITS) * SUB_COUNT;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    //учитывает вызов длительностью nanos, вернувший rows строк (объектов)
+    public void record(long nanos, long rows) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(getIndex(value));
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+        if (rows > 0) {
+            this.rows.add(rows);
+        }
+    }
+
+    //обнуляет гистограмму (записи, идущие одновременно со сбросом, могут сохраниться частично)
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        totalNanos.reset();
+        rows.reset();
+        maxNanos.reset();
+    }
+
+    //снимок гистограммы, длительности - в микросекундах
+    public Snapshot getSnapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        long max = maxNanos.get();
+        long sum = totalNanos.sum();
+        return new Snapshot(total, rows.sum(), sum, (total == 0) ? 0 : sum / total / 1000,
+                getPercentile(counts, total, 0.5, max) / 1000,
+                getPercentile(counts, total, 0.9, max) / 1000,
+                getPercentile(counts, total, 0.99, max) / 1000,
+                max / 1000);
+    }
+
+    ////////////////////////////////// Интервалы /////////////////////////////
+
+    //номер интервала: значения до 8 - точно, дальше - по старшему биту и трем следующим
+    static int getIndex(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    //наименьшее значение интервала
+    static long getLowerBound(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        return (long) (SUB_COUNT + index % SUB_COUNT) << (exponent - SUB_BITS);
+    }
+
+    //верхняя граница интервала, в который попадает доля quantile всех значений
+    private static long getPercentile(long[] counts, long total, double quantile, long max) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long upper = (i + 1 < BUCKET_COUNT) ? getLowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(upper, max);
+            }
+        }
+        return max;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+        //число вызовов
+        private long count;
+        //суммарное число возвращенных строк (объектов)
+        private long rows;
+        //суммарная длительность, нс (без округления средней)
+        private long totalNanos;
+        //средняя длительность, мкс
+        private long mean;
+        //квантили длительности, мкс
+        private long p50;
+        private long p90;
+        private long p99;
+        //наибольшая длительность, мкс
+        private long max;
+    }
+}
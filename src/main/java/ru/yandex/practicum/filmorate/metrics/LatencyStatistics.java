@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+//гистограммы длительностей по именам операций (методов хранилищ или конечных точек)
+public class LatencyStatistics {
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    //гистограмма операции (создается при первом обращении; ссылку можно хранить - сброс ее не заменяет)
+    public LatencyHistogram get(String name) {
+        return histograms.computeIfAbsent(name, (key) -> new LatencyHistogram());
+    }
+
+    public void record(String name, long nanos, long rows) {
+        get(name).record(nanos, rows);
+    }
+
+    //снимки всех гистограмм, в которых есть вызовы (упорядочены по имени)
+    public Map<String, LatencyHistogram.Snapshot> getAll() {
+        Map<String, LatencyHistogram.Snapshot> result = new TreeMap<>();
+        histograms.forEach((name, histogram) -> {
+            LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+            if (snapshot.getCount() > 0) {
+                result.put(name, snapshot);
+            }
+        });
+        return result;
+    }
+
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+}
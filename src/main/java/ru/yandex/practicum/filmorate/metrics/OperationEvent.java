@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/*
+    Общая часть событий JFR о вызовах хранилищ и сервисов: длительность (начало и конец события),
+    имя операции, идентификаторы сущностей из аргументов и число возвращенных строк.
+    Стек вызовов не сохраняется: он почти всегда один и тот же, а его запись дороже самого события.
+ */
+@Category("Filmorate")
+@StackTrace(false)
+abstract class OperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Entity Ids")
+    String ids;
+
+    @Label("Rows")
+    long rows;
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+//вызов операции сервиса (FilmService, UserService)
+@Name(ServiceCallEvent.NAME)
+@Label("Service Call")
+@Description("Service operation call: operation, entity ids and returned rows")
+@Category({"Filmorate", "Service"})
+public class ServiceCallEvent extends OperationEvent {
+    public static final String NAME = "ru.yandex.practicum.filmorate.ServiceCall";
+}
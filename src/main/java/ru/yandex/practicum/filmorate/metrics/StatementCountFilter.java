@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/*
+    Подсчитывает SQL-запросы, выполненные при обработке каждого http-запроса.
+    Учитываются запросы потока обработки (потоковая выдача тела в другом потоке не учитывается).
+    Запросы, превысившие порог filmorate.metrics.statements.warn-threshold, выводятся в лог как подозрительные
+    (N+1 и лишние обращения к базе); нулевой порог отключает предупреждения.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.metrics.statements", havingValue = "true", matchIfMissing = true)
+public class StatementCountFilter extends OncePerRequestFilter {
+    private final StatementStatistics statistics;
+    private final int warnThreshold;
+
+    @Autowired
+    public StatementCountFilter(StatementStatistics statistics,
+                                @Value("${filmorate.metrics.statements.warn-threshold:10}") int warnThreshold) {
+        this.statistics = statistics;
+        this.warnThreshold = warnThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        StatementCounter.reset();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            int count = StatementCounter.get();
+            String endpoint = Endpoints.getName(request);
+            statistics.record(endpoint, count);
+            if ((warnThreshold > 0) && (count > warnThreshold)) {
+                String query = request.getQueryString();
+                log.warn(request.getRequestURI() + ((query == null) ? "" : "?" + query) + " (" + endpoint
+                        + "): SQL-запросов - " + count + ", порог - " + warnThreshold);
+            } else {
+                log.debug(endpoint + ": SQL-запросов - " + count);
+            }
+        }
+    }
+}
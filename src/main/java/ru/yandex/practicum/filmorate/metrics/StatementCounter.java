@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+/*
+    Счетчик SQL-запросов, выполненных текущим потоком, и строк, прочитанных из их результатов.
+    Пакет (executeBatch) считается одним запросом, так как уходит в базу за одно обращение.
+ */
+public final class StatementCounter {
+    //[0] - запросы, [1] - строки результатов
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[2]);
+
+    private StatementCounter() {
+    }
+
+    //обнуляет счетчики текущего потока
+    public static void reset() {
+        long[] count = COUNT.get();
+        count[0] = 0;
+        count[1] = 0;
+    }
+
+    //число запросов текущего потока с момента обнуления
+    public static int get() {
+        return (int) COUNT.get()[0];
+    }
+
+    //число строк, прочитанных текущим потоком из результатов запросов с момента обнуления
+    public static long getRows() {
+        return COUNT.get()[1];
+    }
+
+    static void increment() {
+        COUNT.get()[0]++;
+    }
+
+    static void incrementRows() {
+        COUNT.get()[1]++;
+    }
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+//подменяет источник данных приложения на считающий запросы (отключается filmorate.metrics.statements=false)
+@Component
+@ConditionalOnProperty(name = "filmorate.metrics.statements", havingValue = "true", matchIfMissing = true)
+public class StatementCountingPostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if ((bean instanceof DataSource) && !(bean instanceof CountingDataSource)) {
+            return new CountingDataSource((DataSource) bean);
+        }
+        return bean;
+    }
+}
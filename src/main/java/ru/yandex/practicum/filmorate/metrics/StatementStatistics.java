@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//накопленная статистика числа SQL-запросов на один запрос к каждой конечной точке
+@Component
+public class StatementStatistics {
+    private final ConcurrentMap<String, Counters> endpoints = new ConcurrentHashMap<>();
+
+    //учитывает очередной запрос к конечной точке
+    public void record(String endpoint, int statements) {
+        Counters counters = endpoints.computeIfAbsent(endpoint, (key) -> new Counters());
+        counters.requests.increment();
+        counters.statements.add(statements);
+        counters.max.accumulate(statements);
+    }
+
+    //снимок статистики по всем конечным точкам (упорядочен по имени)
+    public Map<String, Snapshot> getAll() {
+        Map<String, Snapshot> result = new TreeMap<>();
+        endpoints.forEach((endpoint, counters) -> result.put(endpoint, new Snapshot(
+                counters.requests.sum(), counters.statements.sum(), counters.max.get())));
+        return result;
+    }
+
+    public void reset() {
+        endpoints.clear();
+    }
+
+    private static final class Counters {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+        //число обработанных запросов
+        private long requests;
+        //суммарное число SQL-запросов
+        private long statements;
+        //наибольшее число SQL-запросов за один запрос
+        private long max;
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+//вызов метода хранилища
+@Name(StorageCallEvent.NAME)
+@Label("Storage Call")
+@Description("Storage method call: operation, entity ids and returned rows")
+@Category({"Filmorate", "Storage"})
+public class StorageCallEvent extends OperationEvent {
+    public static final String NAME = "ru.yandex.practicum.filmorate.StorageCall";
+}
@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.StaticMethodMatcherPointcutAdvisor;
+import org.springframework.core.Ordered;
+import org.springframework.util.ClassUtils;
+import ru.yandex.practicum.filmorate.storage.FriendStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.Storage;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+    Замер длительности методов хранилищ (интерфейсов Storage, LikeStorage, FriendStorage, GenreStorage, MpaStorage).
+    Совет применяется тем же механизмом, что и @Transactional, и оборачивает транзакцию снаружи,
+    поэтому в длительность входит и ее фиксация. Вызовы внутри самого хранилища не замеряются.
+    Проверки наличия по индексу в памяти (contains, containsGenre) занимают единицы наносекунд,
+    меньше самого замера, поэтому исключены.
+    Число строк - размер возвращенной коллекции (массива), для Optional - 0 или 1.
+ */
+public class StorageTimingAdvisor extends StaticMethodMatcherPointcutAdvisor implements MethodInterceptor {
+    private static final List<Class<?>> STORAGES = List.of(Storage.class, LikeStorage.class, FriendStorage.class,
+            GenreStorage.class, MpaStorage.class);
+    private static final Set<String> IN_MEMORY = Set.of("contains", "containsGenre");
+    private final LatencyStatistics statistics;
+    //гистограммы по классам хранилищ и методам (чтобы не строить имя операции при каждом вызове);
+    //метод по умолчанию из интерфейса (Storage.forEach) один для всех хранилищ, поэтому нужен и класс
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, LatencyHistogram>> histograms =
+            new ConcurrentHashMap<>();
+
+    public StorageTimingAdvisor(LatencyStatistics statistics) {
+        this.statistics = statistics;
+        setAdvice(this);
+        setOrder(Ordered.HIGHEST_PRECEDENCE);
+    }
+
+    ////////////////////////////// Выбор методов /////////////////////////////
+
+    //метод хранилища - открытый метод с именем одного из методов его интерфейсов-хранилищ
+    //(сравниваются имена: параметры обобщенных методов Storage у реализаций уточнены);
+    //мостовые методы не исключаются - через интерфейс Storage вызываются именно они (create, update)
+    @Override
+    public boolean matches(Method method, Class<?> targetClass) {
+        return isStorageMethod(method, targetClass);
+    }
+
+    static boolean isStorageMethod(Method method, Class<?> targetClass) {
+        if (!Modifier.isPublic(method.getModifiers()) || IN_MEMORY.contains(method.getName())) {
+            return false;
+        }
+        for (Class<?> type : ClassUtils.getAllInterfacesForClassAsSet(targetClass)) {
+            if (isStorage(type) && ClassUtils.hasAtLeastOneMethodWithName(type, method.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isStorage(Class<?> type) {
+        return STORAGES.stream().anyMatch((storage) -> storage.isAssignableFrom(type));
+    }
+
+    /////////////////////////////////// Замер ////////////////////////////////
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Class<?> targetClass = invocation.getThis().getClass();
+        LatencyHistogram histogram = histograms
+                .computeIfAbsent(targetClass, (key) -> new ConcurrentHashMap<>())
+                .computeIfAbsent(invocation.getMethod(), (method) -> statistics.get(
+                        ClassUtils.getUserClass(targetClass).getSimpleName() + "." + method.getName()));
+        Object result = null;
+        long start = System.nanoTime();
+        try {
+            result = invocation.proceed();
+            return result;
+        } finally {
+            histogram.record(System.nanoTime() - start, countRows(result));
+        }
+    }
+
+    //число строк в результате вызова
+    static long countRows(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        } else if (result instanceof Map) {
+            return ((Map<?, ?>) result).size();
+        } else if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        } else if (result instanceof boolean[]) {
+            return ((boolean[]) result).length;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.yandex.practicum.filmorate.exception.IncorrectParameterException;
+import ru.yandex.practicum.filmorate.exception.IncorrectParameterFormatException;
+import ru.yandex.practicum.filmorate.exception.ObjectAlreadyExistException;
+import ru.yandex.practicum.filmorate.exception.ObjectNotExistException;
+import ru.yandex.practicum.filmorate.exception.ValidateException;
+
+import javax.validation.ConstraintViolationException;
+
+@Getter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult {
+    //номер элемента в пакете
+    private int index;
+    //http-код, который вернул бы одиночный запрос
+    private int status;
+    //идентификатор созданного объекта
+    private Long id;
+    //описание ошибки
+    private String error;
+
+    public static BatchResult ok(int index, Long id) {
+        return new BatchResult(index, 200, id, null);
+    }
+
+    //код ошибки выбирается так же, как в ErrorHandler
+    public static BatchResult failed(int index, RuntimeException e) {
+        int status = 500;
+        if ((e instanceof ValidateException) || (e instanceof ConstraintViolationException)
+                || (e instanceof IncorrectParameterFormatException)) {
+            status = 400;
+        } else if ((e instanceof IncorrectParameterException) || (e instanceof ObjectNotExistException)) {
+            status = 404;
+        } else if (e instanceof ObjectAlreadyExistException) {
+            status = 409;
+        }
+        return new BatchResult(index, status, null, e.getMessage());
+    }
+}
@@ -10,6 +10,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Getter
 @Setter
@@ -27,19 +28,10 @@ public class Film implements Storable {
     private int duration;
     private List<Genre> genres;
     private Mpa mpa;
-    private Set<Long> likes;
+    private LongIdSet likes;
 
     ////////////////////////// Обновление коллекций //////////////////////////
 
-    public boolean isGenreNew(long genreId) {
-        for (Genre genre : genres) {
-            if (genre.getId() == genreId) {
-                return false;
-            }
-        }
-        return true;
-    }
-
     public void addGenre(Genre genre) {
         if (genres == null) {
             genres = new ArrayList<>();
@@ -49,9 +41,43 @@ public class Film implements Storable {
 
     public void addLike(long userId) {
         if (likes == null) {
-            likes = new HashSet<>();
+            likes = new LongIdSet();
         }
-        likes.add(userId);
+        likes.addId(userId);
+    }
+
+    //любое множество лайков хранится в компактном виде
+    public void setLikes(Set<Long> likes) {
+        this.likes = (likes == null) ? null : LongIdSet.of(likes);
+    }
+
+    /////////////////////////////// Копирование /////////////////////////////
+
+    //глубокая копия фильма (изменения копии не затрагивают оригинал)
+    public Film copy() {
+        return Film.builder()
+                .id(id)
+                .name(name)
+                .description(description)
+                .releaseDate(releaseDate)
+                .duration(duration)
+                .genres((genres == null) ? null : genres.stream()
+                        .map((genre) -> Genre.builder()
+                                .id(genre.getId())
+                                .name(genre.getName())
+                                .build())
+                        .collect(Collectors.toList()))
+                .mpa((mpa == null) ? null : Mpa.builder()
+                        .id(mpa.getId())
+                        .name(mpa.getName())
+                        .build())
+                .likes((likes == null) ? null : likes.copy())
+                .build();
+    }
+
+    //условный размер фильма в памяти (для ограничения кэша)
+    public long weight() {
+        return 1 + ((likes == null) ? 0 : likes.size()) + ((genres == null) ? 0 : genres.size());
     }
 
     /////////////////////////////// Конвертация //////////////////////////////
@@ -80,40 +106,8 @@ public class Film implements Storable {
                         .name(null)
                         .build())
                 .build();
-        film.setLikes(new HashSet<>());
+        film.setLikes(new LongIdSet());
         film.setGenres(new ArrayList<>());
         return film;
     }
-
-    //распаковка строки со всеми связями в фильм
-    public static void storeFullRow(ResultSet rs, Map<Long, Film> map) throws SQLException {
-        Film film;
-        //читаем идентификатор
-        long filmId = rs.getLong("films.id");
-        if (!map.containsKey(filmId)) { //фильма еще не было в map
-            film = mapRowToFilm(rs, 0); //создаем его из набора
-        } else { //он уже был
-            film = map.get(filmId); //читаем его из map
-        }
-        //подгружаем имя рейтинга
-        film.getMpa().setName(rs.getString("mpa.name"));
-        //читаем из сводной таблицы лайк
-        long userId = rs.getLong("likes.user_id");
-        if (userId > 0) { //он есть
-            film.addLike(userId); //добавляем его к фильму
-        }
-        //читаем из сводной таблицы жанр
-        long genreId = rs.getLong("genres.id");
-        if ((genreId > 0) && (film.isGenreNew(genreId))) { //он есть и новый
-            //создаем объект-жанр
-            Genre genre = Genre.builder()
-                    .id(genreId)
-                    .name(rs.getString("genres.name"))
-                    .build();
-            //добавляем его к фильму
-            film.addGenre(genre);
-        }
-        //пишем фильм в хранилище
-        map.put(filmId, film);
-    }
 }
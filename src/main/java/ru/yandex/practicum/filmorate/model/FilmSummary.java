@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.*;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Краткое представление фильма (?view=summary): вместо множества лайков - только их число.
+    Число берется из счетчика like_count в строке фильма, сами лайки при этом не читаются.
+ */
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+@Builder
+public class FilmSummary {
+    private long id;
+    private String name;
+    private String description;
+    private LocalDate releaseDate;
+    private int duration;
+    private List<Genre> genres;
+    private Mpa mpa;
+    private int likeCount;
+
+    public void addGenre(Genre genre) {
+        if (genres == null) {
+            genres = new ArrayList<>();
+        }
+        genres.add(genre);
+    }
+
+    //распаковка строки таблицы films в краткое представление (без жанров)
+    public static FilmSummary mapRowToSummary(ResultSet resultSet, int rowNum) throws SQLException {
+        return FilmSummary.builder()
+                .id(resultSet.getLong("films.id"))
+                .name(resultSet.getString("films.name"))
+                .description(resultSet.getString("films.description"))
+                .releaseDate(resultSet.getDate("films.release_date").toLocalDate())
+                .duration(resultSet.getInt("films.duration"))
+                .mpa(Mpa.builder()
+                        .id(resultSet.getLong("films.mpa_id"))
+                        .name(null)
+                        .build())
+                .genres(new ArrayList<>())
+                .likeCount(resultSet.getInt("films.like_count"))
+                .build();
+    }
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Positive;
+
+//дружеская связь в пакетном запросе
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FriendLink {
+    @Positive
+    private long userId;
+    @Positive
+    private long friendId;
+}
@@ -0,0 +1,287 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exception.IncorrectParameterException;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/*
+    Отображение "друг -> признак подтверждения" на одном отсортированном массиве long.
+    Каждый элемент хранит id друга в старших битах и признак подтверждения в младшем,
+    поэтому связь занимает 8 байт без упаковки ключа и значения.
+    Допустимы id из [0, 2^62): тогда упакованные связи неотрицательны и их порядок совпадает с порядком id.
+    Отображения в произвольном порядке (например, из json) добавляются целиком - сортировкой и слиянием.
+    В json сериализуется как обычный объект {"id": true/false}.
+ */
+public class FriendMap extends AbstractMap<Long, Boolean> {
+    private static final long[] EMPTY = new long[0];
+    //граница id (не включая): 2^62
+    private static final long ID_LIMIT = 1L << 62;
+    //(id << 1) | ack, по возрастанию id
+    private long[] links;
+    private int size;
+    private int modCount;
+
+    public FriendMap() {
+        links = EMPTY;
+    }
+
+    public FriendMap(Map<Long, Boolean> map) {
+        this();
+        putAll(map);
+    }
+
+    //возвращает само отображение, если оно уже FriendMap, иначе - его копию
+    public static FriendMap of(Map<Long, Boolean> map) {
+        if (map instanceof FriendMap) {
+            return (FriendMap) map;
+        }
+        return new FriendMap(map);
+    }
+
+    /////////////////////////// Операции без упаковки ////////////////////////
+
+    public boolean containsFriend(long friendId) {
+        return indexOf(friendId) >= 0;
+    }
+
+    public boolean isAcknowledged(long friendId) {
+        int index = indexOf(friendId);
+        return (index >= 0) && ((links[index] & 1) != 0);
+    }
+
+    //добавляет связь или меняет признак подтверждения существующей
+    public void putFriend(long friendId, boolean ack) {
+        long link = pack(friendId, ack);
+        if ((size == 0) || ((links[size - 1] >>> 1) < friendId)) { //частый случай - добавление в конец
+            insert(size, link);
+            return;
+        }
+        int index = indexOf(friendId);
+        if (index >= 0) {
+            links[index] = link;
+        } else {
+            insert(-index - 1, link);
+        }
+    }
+
+    public boolean removeFriend(long friendId) {
+        int index = indexOf(friendId);
+        if (index < 0) {
+            return false;
+        }
+        delete(index);
+        return true;
+    }
+
+    //независимая копия отображения (без упаковки элементов)
+    public FriendMap copy() {
+        FriendMap map = new FriendMap();
+        map.links = Arrays.copyOf(links, size);
+        map.size = size;
+        return map;
+    }
+
+    //i-й по возрастанию друг
+    public long getFriendId(int index) {
+        checkIndex(index);
+        return links[index] >>> 1;
+    }
+
+    //признак подтверждения i-го по возрастанию друга
+    public boolean isAcknowledgedAt(int index) {
+        checkIndex(index);
+        return (links[index] & 1) != 0;
+    }
+
+    ///////////////////////////// Реализация Map /////////////////////////////
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (key instanceof Long) && containsFriend((Long) key);
+    }
+
+    @Override
+    public Boolean get(Object key) {
+        if (!(key instanceof Long)) {
+            return null;
+        }
+        int index = indexOf((Long) key);
+        return (index < 0) ? null : (links[index] & 1) != 0;
+    }
+
+    @Override
+    public Boolean put(Long key, Boolean value) {
+        Boolean old = get(key);
+        putFriend(key, Boolean.TRUE.equals(value));
+        return old;
+    }
+
+    //добавление отображения одним слиянием: O(m log m + n) вместо O(m * n) при вставке по одному
+    @Override
+    public void putAll(Map<? extends Long, ? extends Boolean> map) {
+        if (map instanceof FriendMap) {
+            FriendMap other = (FriendMap) map;
+            merge(other.links, other.size);
+            return;
+        }
+        long[] sorted = new long[map.size()];
+        int count = 0;
+        for (Entry<? extends Long, ? extends Boolean> entry : map.entrySet()) {
+            sorted[count++] = pack(entry.getKey(), Boolean.TRUE.equals(entry.getValue()));
+        }
+        Arrays.sort(sorted, 0, count); //ключи различны, поэтому порядок - по id
+        merge(sorted, count);
+    }
+
+    @Override
+    public Boolean remove(Object key) {
+        Boolean old = get(key);
+        if (old != null) {
+            removeFriend((Long) key);
+        }
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        links = EMPTY;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<Long, Boolean>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Entry<Long, Boolean>> iterator() {
+                return new Iterator<>() {
+                    private int next;
+                    private int last = -1;
+                    private int expectedModCount = modCount;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<Long, Boolean> next() {
+                        if (expectedModCount != modCount) {
+                            throw new ConcurrentModificationException();
+                        }
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        last = next++;
+                        return new SimpleImmutableEntry<>(links[last] >>> 1, (links[last] & 1) != 0);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last < 0) {
+                            throw new IllegalStateException();
+                        }
+                        if (expectedModCount != modCount) {
+                            throw new ConcurrentModificationException();
+                        }
+                        delete(last);
+                        next = last;
+                        last = -1;
+                        expectedModCount = modCount;
+                    }
+                };
+            }
+        };
+    }
+
+    ////////////////////////////// Работа с массивом /////////////////////////
+
+    //упаковывает связь; id вне [0, 2^62) дал бы отрицательный элемент и нарушил порядок массива
+    private static long pack(long friendId, boolean ack) {
+        if ((friendId < 0) || (friendId >= ID_LIMIT)) {
+            throw new IncorrectParameterException("Идентификатор друга %d вне допустимого диапазона.", friendId);
+        }
+        return (friendId << 1) | (ack ? 1 : 0);
+    }
+
+    //двоичный поиск по id; результат в формате Arrays.binarySearch
+    private int indexOf(long friendId) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = links[mid] >>> 1;
+            if (midId < friendId) {
+                low = mid + 1;
+            } else if (midId > friendId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insert(int index, long link) {
+        if (size == links.length) {
+            links = Arrays.copyOf(links, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(links, index, links, index + 1, size - index);
+        links[index] = link;
+        size++;
+        modCount++;
+    }
+
+    //сливает с отображением первые count связей отсортированного массива (при совпадении id берется новая)
+    private void merge(long[] sorted, int count) {
+        if (count == 0) {
+            return;
+        }
+        long[] result = new long[size + count];
+        int i = 0;
+        int j = 0;
+        int length = 0;
+        while ((i < size) || (j < count)) {
+            if ((j == count) || ((i < size) && ((links[i] >>> 1) < (sorted[j] >>> 1)))) {
+                result[length++] = links[i++];
+            } else {
+                if ((i < size) && ((links[i] >>> 1) == (sorted[j] >>> 1))) { //связь уже есть
+                    i++;
+                }
+                result[length++] = sorted[j++];
+            }
+        }
+        links = result;
+        size = length;
+        modCount++;
+    }
+
+    private void delete(int index) {
+        System.arraycopy(links, index + 1, links, index, size - index - 1);
+        size--;
+        modCount++;
+    }
+
+    private void checkIndex(int index) {
+        if ((index < 0) || (index >= size)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class IdLookup<T> {
+    //найденные объекты (в порядке запроса)
+    private List<T> items;
+    //идентификаторы, для которых объектов нет
+    private List<Long> missing;
+}
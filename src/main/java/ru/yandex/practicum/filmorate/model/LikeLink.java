@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Positive;
+
+//лайк в пакетном запросе
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LikeLink {
+    @Positive
+    private long filmId;
+    @Positive
+    private long userId;
+}
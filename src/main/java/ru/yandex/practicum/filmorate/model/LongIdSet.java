@@ -0,0 +1,220 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+    Множество идентификаторов на отсортированном массиве long.
+    Занимает 8 байт на элемент вместо ~50 у HashSet<Long>; идентификаторы,
+    добавляемые по возрастанию (как при чтении из базы), дописываются в конец за O(1).
+    Коллекции в произвольном порядке (например, из json) добавляются целиком - сортировкой и слиянием,
+    а не вставкой каждого элемента со сдвигом массива.
+    В json сериализуется как обычный массив чисел.
+ */
+public class LongIdSet extends AbstractSet<Long> {
+    private static final long[] EMPTY = new long[0];
+    private long[] ids;
+    private int size;
+    private int modCount;
+
+    public LongIdSet() {
+        ids = EMPTY;
+    }
+
+    public LongIdSet(Collection<Long> collection) {
+        this();
+        addAll(collection);
+    }
+
+    //возвращает саму коллекцию, если она уже LongIdSet, иначе - ее копию
+    public static LongIdSet of(Collection<Long> collection) {
+        if (collection instanceof LongIdSet) {
+            return (LongIdSet) collection;
+        }
+        return new LongIdSet(collection);
+    }
+
+    /////////////////////////// Операции без упаковки ////////////////////////
+
+    public boolean containsId(long id) {
+        return indexOf(id) >= 0;
+    }
+
+    public boolean addId(long id) {
+        if ((size == 0) || (ids[size - 1] < id)) { //частый случай - добавление в конец
+            insert(size, id);
+            return true;
+        }
+        int index = indexOf(id);
+        if (index >= 0) {
+            return false;
+        }
+        insert(-index - 1, id);
+        return true;
+    }
+
+    public boolean removeId(long id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return false;
+        }
+        delete(index);
+        return true;
+    }
+
+    //i-й по возрастанию идентификатор
+    public long getId(int index) {
+        if ((index < 0) || (index >= size)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return ids[index];
+    }
+
+    //независимая копия множества (без упаковки элементов)
+    public LongIdSet copy() {
+        LongIdSet set = new LongIdSet();
+        set.ids = Arrays.copyOf(ids, size);
+        set.size = size;
+        return set;
+    }
+
+    //копия идентификаторов по возрастанию
+    public long[] toLongArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    ///////////////////////////// Реализация Set /////////////////////////////
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return (o instanceof Long) && containsId((Long) o);
+    }
+
+    @Override
+    public boolean add(Long id) {
+        return addId(id);
+    }
+
+    //добавление коллекции одним слиянием: O(m log m + n) вместо O(m * n) при вставке по одному
+    @Override
+    public boolean addAll(Collection<? extends Long> collection) {
+        if (collection instanceof LongIdSet) {
+            LongIdSet other = (LongIdSet) collection;
+            return merge(other.ids, other.size);
+        }
+        Long[] boxed = collection.toArray(new Long[0]);
+        long[] sorted = new long[boxed.length];
+        for (int i = 0; i < boxed.length; i++) {
+            sorted[i] = boxed[i];
+        }
+        Arrays.sort(sorted);
+        return merge(sorted, sorted.length);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return (o instanceof Long) && removeId((Long) o);
+    }
+
+    @Override
+    public void clear() {
+        ids = EMPTY;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new Iterator<>() {
+            private int next;
+            private int last = -1;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Long next() {
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return ids[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                delete(last);
+                next = last;
+                last = -1;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    ////////////////////////////// Работа с массивом /////////////////////////
+
+    private int indexOf(long id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+
+    private void insert(int index, long id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        ids[index] = id;
+        size++;
+        modCount++;
+    }
+
+    //сливает с множеством первые count элементов отсортированного массива (повторы отбрасываются)
+    private boolean merge(long[] sorted, int count) {
+        if (count == 0) {
+            return false;
+        }
+        long[] result = new long[size + count];
+        int i = 0;
+        int j = 0;
+        int length = 0;
+        while ((i < size) || (j < count)) {
+            long next = ((j == count) || ((i < size) && (ids[i] <= sorted[j]))) ? ids[i++] : sorted[j++];
+            if ((length == 0) || (result[length - 1] != next)) {
+                result[length++] = next;
+            }
+        }
+        if (length == size) { //новых элементов нет
+            return false;
+        }
+        ids = result;
+        size = length;
+        modCount++;
+        return true;
+    }
+
+    private void delete(int index) {
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        modCount++;
+    }
+}
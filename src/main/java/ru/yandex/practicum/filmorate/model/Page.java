@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class Page<T> {
+    //элементы страницы (по возрастанию id)
+    private List<T> items;
+    //курсор следующей страницы (id последнего элемента), null - страница последняя
+    private Long next;
+}
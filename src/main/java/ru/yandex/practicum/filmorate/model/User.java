@@ -28,15 +28,39 @@ public class User implements Storable {
     @NotNull
     @PastOrPresent
     private LocalDate birthday;
-    private Map<Long, Boolean> friends;
+    private FriendMap friends;
 
     ////////////////////// Обновление коллекции друзей ///////////////////////
 
     public void addFriend(long friendId, boolean ack) {
         if (friends == null) {
-            friends = new HashMap<>();
+            friends = new FriendMap();
         }
-        friends.put(friendId, ack);
+        friends.putFriend(friendId, ack);
+    }
+
+    //любой набор друзей хранится в компактном виде
+    public void setFriends(Map<Long, Boolean> friends) {
+        this.friends = (friends == null) ? null : FriendMap.of(friends);
+    }
+
+    /////////////////////////////// Копирование /////////////////////////////
+
+    //глубокая копия пользователя (изменения копии не затрагивают оригинал)
+    public User copy() {
+        return User.builder()
+                .id(id)
+                .login(login)
+                .name(name)
+                .email(email)
+                .birthday(birthday)
+                .friends((friends == null) ? null : friends.copy())
+                .build();
+    }
+
+    //условный размер пользователя в памяти (для ограничения кэша)
+    public long weight() {
+        return 1 + ((friends == null) ? 0 : friends.size());
     }
 
     /////////////////////////////// Конвертация //////////////////////////////
@@ -60,7 +84,7 @@ public class User implements Storable {
                 .email(resultSet.getString("users.email"))
                 .birthday(resultSet.getDate("users.birthday").toLocalDate())
                 .build();
-        user.setFriends(new HashMap<>());
+        user.setFriends(new FriendMap());
         return user;
     }
 
@@ -100,7 +124,7 @@ public class User implements Storable {
         User friend = null;
         if (map.containsKey(friendId)) { //друг уже встречался в наборе
             friend = map.get(friendId); //читаем его
-            ack = (friend.getFriends() != null) && (friend.getFriends().containsKey(userId));
+            ack = (friend.getFriends() != null) && (friend.getFriends().containsFriend(userId));
         }
         if (!ack) { //дружба не взаимная
             user.addFriend(friendId, false);
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.exception.ValidateException;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+//общие операции пакетной записи
+final class Batches {
+    //число элементов пакета, записываемых в одной транзакции
+    static final int CHUNK_SIZE = 500;
+
+    private Batches() {
+    }
+
+    //проверяет ограничения элемента пакета (те же, что @Valid у одиночного запроса)
+    static void checkConstraints(Validator validator, Object item) {
+        if (item == null) {
+            throw new ValidateException("Элемент пакета не задан.");
+        }
+        Set<ConstraintViolation<Object>> violations = validator.validate(item);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+    }
+
+    //делит номера элементов на порции по CHUNK_SIZE
+    static List<List<Integer>> chunks(List<Integer> indexes) {
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int from = 0; from < indexes.size(); from += CHUNK_SIZE) {
+            chunks.add(indexes.subList(from, Math.min(from + CHUNK_SIZE, indexes.size())));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,210 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.FriendStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/*
+    Генератор синтетического набора данных для нагрузочных и масштабных проверок.
+    Пишет пакетами прямо через хранилища, минуя проверки сервисов; данные однозначно
+    определяются параметрами (DatasetSettings), включая зерно генератора случайных чисел.
+    Лайки: фильм с рангом r (ранг - порядок создания) набирает в среднем лайков пропорционально 1 / r^skew,
+    пользователи для него выбираются равновероятно.
+    Друзья: модель "тесного мира" Уоттса - Строгаца - кольцо, где каждый дружит с ближайшими соседями
+    (поэтому большинство связей взаимны), а доля rewiring связей переброшена к случайным пользователям.
+ */
+@Slf4j
+@Service
+public class DatasetGenerator {
+    //число пользователей (фильмов) в одном пакете записи
+    private static final int BATCH_SIZE = 1000;
+    //число лайков, после которого пакет фильмов записывается, не дожидаясь BATCH_SIZE фильмов
+    private static final int BATCH_LIKES = 100000;
+    private static final LocalDate BASE_DATE = LocalDate.of(1950, 1, 1);
+    private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
+    private final FriendStorage friendStorage;
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final UserService userService;
+    private final FilmService filmService;
+
+    @Autowired
+    public DatasetGenerator(UserStorage userStorage, FilmStorage filmStorage, FriendStorage friendStorage,
+                            GenreStorage genreStorage, MpaStorage mpaStorage,
+                            UserService userService, FilmService filmService) {
+        this.userStorage = userStorage;
+        this.filmStorage = filmStorage;
+        this.friendStorage = friendStorage;
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+        this.userService = userService;
+        this.filmService = filmService;
+    }
+
+    //добавляет в базу набор данных и перестраивает данные сервисов в памяти
+    public void generate(DatasetSettings settings) {
+        long start = System.currentTimeMillis();
+        Random random = new Random(settings.getSeed());
+        long[] userIds = createUsers(settings, random);
+        long likeCount = createFilms(settings, userIds, random);
+        long friendCount = createFriends(settings, userIds, random);
+        userService.reload();
+        filmService.reload();
+        log.info("Сгенерировано " + userIds.length + " пользователей, " + settings.getFilms() + " фильмов, "
+                + likeCount + " лайков и " + friendCount + " дружеских связей за "
+                + (System.currentTimeMillis() - start) + " мс (" + settings + ").");
+    }
+
+    ////////////////////////////// Пользователи //////////////////////////////
+
+    //создает пользователей и возвращает их идентификаторы по порядку создания
+    private long[] createUsers(DatasetSettings settings, Random random) {
+        long[] userIds = new long[settings.getUsers()];
+        List<User> batch = new ArrayList<>();
+        for (int i = 0; i < userIds.length; i++) {
+            batch.add(User.builder()
+                    .login("user" + (i + 1))
+                    .name("Пользователь " + (i + 1))
+                    .email("user" + (i + 1) + "@yandex.ru")
+                    .birthday(BASE_DATE.plusDays(random.nextInt(20000)))
+                    .build());
+            if ((batch.size() == BATCH_SIZE) || (i == userIds.length - 1)) {
+                userStorage.createAll(batch);
+                for (int j = 0; j < batch.size(); j++) {
+                    userIds[i - batch.size() + 1 + j] = batch.get(j).getId();
+                }
+                batch.clear();
+            }
+        }
+        return userIds;
+    }
+
+    //////////////////////////////// Фильмы //////////////////////////////////
+
+    //создает фильмы вместе с жанрами и лайками, возвращает число лайков
+    private long createFilms(DatasetSettings settings, long[] userIds, Random random) {
+        List<Genre> genres = genreStorage.getAllGenres();
+        List<Mpa> mpas = mpaStorage.getAllMpa();
+        //множитель, при котором лайков в среднем likesPerUser на пользователя;
+        //фильм не набирает лайков больше, чем есть пользователей, поэтому избыток первых фильмов
+        //распределяется по остальным пропорционально их весам
+        double sum = 0;
+        for (int rank = 1; rank <= settings.getFilms(); rank++) {
+            sum += 1 / Math.pow(rank, settings.getSkew());
+        }
+        double total = Math.min((double) userIds.length * settings.getLikesPerUser(),
+                (double) userIds.length * settings.getFilms());
+        int capped = 0;
+        double scale = total / sum;
+        while ((capped < settings.getFilms()) && (scale / Math.pow(capped + 1, settings.getSkew()) > userIds.length)) {
+            sum -= 1 / Math.pow(capped + 1, settings.getSkew());
+            capped++;
+            scale = (sum > 0) ? (total - (double) capped * userIds.length) / sum : 0;
+        }
+        List<Film> batch = new ArrayList<>();
+        int batchLikes = 0;
+        long likeCount = 0;
+        for (int rank = 1; rank <= settings.getFilms(); rank++) {
+            Film film = Film.builder()
+                    .name("Фильм " + rank)
+                    .description("Синтетический фильм " + rank)
+                    .releaseDate(BASE_DATE.plusDays(random.nextInt(25000)))
+                    .duration(60 + random.nextInt(120))
+                    .mpa(mpas.get(random.nextInt(mpas.size())))
+                    .build();
+            int genre = random.nextInt(genres.size()); //один-два жанра на фильм
+            film.addGenre(genres.get(genre));
+            if ((genres.size() > 1) && random.nextBoolean()) {
+                film.addGenre(genres.get((genre + 1) % genres.size()));
+            }
+            //ожидаемое число лайков округляется случайно, чтобы сохранить среднее
+            double expected = scale / Math.pow(rank, settings.getSkew());
+            int count = (int) Math.min(userIds.length, Math.floor(expected + random.nextDouble()));
+            film.setLikes(pickUsers(userIds, count, random));
+            batch.add(film);
+            batchLikes += count;
+            likeCount += count;
+            if ((batch.size() == BATCH_SIZE) || (batchLikes >= BATCH_LIKES) || (rank == settings.getFilms())) {
+                filmStorage.createAll(batch);
+                batch.clear();
+                batchLikes = 0;
+            }
+        }
+        return likeCount;
+    }
+
+    //выбирает count разных пользователей равновероятно, результат упорядочен по возрастанию id
+    private static LongIdSet pickUsers(long[] userIds, int count, Random random) {
+        LongIdSet users = new LongIdSet();
+        int total = userIds.length;
+        if (count * 4L > total) { //большая доля - последовательным отбором (алгоритм S Кнута)
+            int needed = count;
+            for (int i = 0; (i < total) && (needed > 0); i++) {
+                if (random.nextInt(total - i) < needed) {
+                    users.addId(userIds[i]);
+                    needed--;
+                }
+            }
+        } else { //малая доля - случайными номерами с отбрасыванием повторов
+            Set<Integer> picked = new HashSet<>();
+            while (picked.size() < count) {
+                picked.add(random.nextInt(total));
+            }
+            picked.stream().mapToInt(Integer::intValue).sorted().forEach((i) -> users.addId(userIds[i]));
+        }
+        return users;
+    }
+
+    //////////////////////////////// Друзья //////////////////////////////////
+
+    //строит граф "тесного мира" и возвращает число связей
+    private long createFriends(DatasetSettings settings, long[] userIds, Random random) {
+        int total = userIds.length;
+        int degree = Math.max(0, Math.min(settings.getFriendsPerUser(), total - 1));
+        long friendCount = 0;
+        for (int from = 0; from < total; from += BATCH_SIZE) {
+            int to = Math.min(from + BATCH_SIZE, total);
+            long[] users = new long[(to - from) * degree];
+            long[] friends = new long[users.length];
+            int size = 0;
+            for (int i = from; i < to; i++) {
+                LongIdSet userFriends = new LongIdSet();
+                for (int j = 0; j < degree; j++) {
+                    //соседи по кольцу поочередно справа и слева: i + 1, i - 1, i + 2, i - 2, ...
+                    int friend = Math.floorMod(i + (j / 2 + 1) * ((j % 2 == 0) ? 1 : -1), total);
+                    if ((random.nextDouble() < settings.getRewiring()) || userFriends.containsId(userIds[friend])) {
+                        do { //связь перебрасывается к случайному пользователю
+                            friend = random.nextInt(total);
+                        } while ((friend == i) || userFriends.containsId(userIds[friend]));
+                    }
+                    userFriends.addId(userIds[friend]);
+                }
+                for (int j = 0; j < userFriends.size(); j++) {
+                    users[size] = userIds[i];
+                    friends[size++] = userFriends.getId(j);
+                }
+            }
+            friendStorage.loadFriends(users, friends);
+            friendCount += size;
+        }
+        return friendCount;
+    }
+}
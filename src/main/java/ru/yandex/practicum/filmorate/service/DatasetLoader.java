@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+//заполнение пустой базы синтетическими данными при старте (профиль dataset)
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.dataset.enabled", havingValue = "true")
+public class DatasetLoader implements ApplicationRunner {
+    private final DatasetGenerator generator;
+    private final UserStorage userStorage;
+    private final DatasetSettings settings;
+
+    @Autowired
+    public DatasetLoader(DatasetGenerator generator, UserStorage userStorage,
+                         @Value("${filmorate.dataset.seed:1}") long seed,
+                         @Value("${filmorate.dataset.users:1000}") int users,
+                         @Value("${filmorate.dataset.films:200}") int films,
+                         @Value("${filmorate.dataset.likes-per-user:20}") int likesPerUser,
+                         @Value("${filmorate.dataset.friends-per-user:10}") int friendsPerUser,
+                         @Value("${filmorate.dataset.skew:1}") double skew,
+                         @Value("${filmorate.dataset.rewiring:0.1}") double rewiring) {
+        this.generator = generator;
+        this.userStorage = userStorage;
+        this.settings = DatasetSettings.builder()
+                .seed(seed)
+                .users(users)
+                .films(films)
+                .likesPerUser(likesPerUser)
+                .friendsPerUser(friendsPerUser)
+                .skew(skew)
+                .rewiring(rewiring)
+                .build();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!userStorage.getPage(0, 1).isEmpty()) { //база уже заполнена (например, хранится в файле)
+            log.info("База не пуста, синтетические данные не добавляются.");
+            return;
+        }
+        generator.generate(settings);
+    }
+}
@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+//параметры синтетического набора данных (см. DatasetGenerator)
+@Getter
+@ToString
+@Builder
+public class DatasetSettings {
+    //зерно генератора случайных чисел: одинаковые параметры дают одинаковые данные
+    @Builder.Default
+    private final long seed = 1;
+    @Builder.Default
+    private final int users = 1000;
+    @Builder.Default
+    private final int films = 200;
+    //среднее число лайков на пользователя
+    @Builder.Default
+    private final int likesPerUser = 20;
+    //число друзей (подписок) каждого пользователя
+    @Builder.Default
+    private final int friendsPerUser = 10;
+    //показатель степенного закона популярности фильмов: 0 - равномерно, около 1 - закон Ципфа
+    @Builder.Default
+    private final double skew = 1;
+    //вероятность заменить соседа по кольцу случайным пользователем (модель "тесного мира")
+    @Builder.Default
+    private final double rewiring = 0.1;
+}
@@ -3,40 +3,73 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.cache.ObjectCache;
 import ru.yandex.practicum.filmorate.exception.IncorrectParameterException;
 import ru.yandex.practicum.filmorate.exception.ObjectAlreadyExistException;
 import ru.yandex.practicum.filmorate.exception.ObjectNotExistException;
 import ru.yandex.practicum.filmorate.exception.ValidateException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.IdLookup;
+import ru.yandex.practicum.filmorate.model.LikeLink;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmLeaderboard;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.LikeStorage;
 import ru.yandex.practicum.filmorate.storage.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import javax.validation.Validator;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class FilmService {
+    //число объектов, одновременно находящихся в памяти при потоковой выдаче
+    private static final int STREAM_CHUNK_SIZE = 1000;
     private static final LocalDate BASE_DATE = LocalDate.of(1895, 12, 28);
     private final FilmStorage filmStorage;
     private final GenreStorage genreStorage;
     private final MpaStorage mpaStorage;
 
     private final LikeStorage likeStorage;
+    private final FilmLeaderboard leaderboard;
+    private final ObjectCache<Film> filmCache;
+    private final UserStorage userStorage;
+    private final LikeWriteBuffer likeBuffer;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
 
     @Autowired
-    public FilmService(FilmStorage filmStorage, GenreStorage genreStorage,
-                       MpaStorage mpaStorage, LikeStorage likeStorage) {
+    public FilmService(FilmStorage filmStorage, GenreStorage genreStorage, MpaStorage mpaStorage,
+                       LikeStorage likeStorage, FilmLeaderboard leaderboard, ObjectCache<Film> filmCache,
+                       UserStorage userStorage, LikeWriteBuffer likeBuffer,
+                       TransactionTemplate transactionTemplate, Validator validator) {
         this.filmStorage = filmStorage;
         this.genreStorage = genreStorage;
         this.mpaStorage = mpaStorage;
         this.likeStorage = likeStorage;
+        this.leaderboard = leaderboard;
+        this.filmCache = filmCache;
+        this.userStorage = userStorage;
+        this.likeBuffer = likeBuffer;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
     }
 
     //////////////////////////////////////////////////////////////////////////
@@ -47,52 +80,145 @@ public class FilmService {
 
     //получение фильма по идентификатору
     public Film get(long id) {
-        //создаем фильм и читаем все его данные из базы
-        return filmStorage.get(id).orElseThrow(() -> { //фильма нет, ошибка
+        //незаписанные лайки запоминаем до чтения фильма
+        Map<Long, Boolean> pendingLikes = likeBuffer.isEnabled() ? likeBuffer.getPending(id) : Map.of();
+        //берем фильм из кэша, при отсутствии - читаем все его данные из базы
+        Film film = filmCache.get(id, filmStorage::get).orElseThrow(() -> { //фильма нет, ошибка
             log.error("Задан ошибочный идентификатор: " + id);
             return new IncorrectParameterException("Задан ошибочный идентификатор: ", id);
         });
+        LikeWriteBuffer.apply(pendingLikes, film.getLikes());
+        return film;
     }
 
     //получение всех фильмов
     public List<Film> getAll() {
+        flushPendingLikes();
         //читаем все фильмы со связями
         return filmStorage.getAll();
     }
 
+    //получение страницы фильмов, следующих за фильмом after
+    public Page<Film> getPage(long after, int limit) {
+        flushPendingLikes();
+        List<Film> films = filmStorage.getPage(after, limit);
+        Long next = (films.size() < limit) ? null : films.get(films.size() - 1).getId();
+        return new Page<>(films, next);
+    }
+
+    /*
+        получение фильмов по списку идентификаторов (повторы отбрасываются, порядок сохраняется)
+        фильмы из кэша берутся сразу, остальные читаются одним пакетом со связями
+     */
+    public IdLookup<Film> getByIds(List<Long> ids) {
+        //отложенные лайки снимаем до чтения фильмов, как и в get
+        Map<Long, Map<Long, Boolean>> pendingLikes = new HashMap<>();
+        if (likeBuffer.isEnabled()) {
+            for (Long id : ids) {
+                pendingLikes.put(id, likeBuffer.getPending(id));
+            }
+        }
+        Map<Long, Film> found = filmCache.getAll(ids, (missed) -> filmStorage.getByIds(missed).stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity())));
+        List<Film> films = new ArrayList<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            Film film = found.get(id);
+            if (film == null) {
+                missing.add(id);
+                continue;
+            }
+            LikeWriteBuffer.apply(pendingLikes.getOrDefault(id, Map.of()), film.getLikes());
+            films.add(film);
+        }
+        if (!missing.isEmpty()) {
+            log.warn("Не найдены фильмы: " + missing);
+        }
+        return new IdLookup<>(films, missing);
+    }
+
+    //потоковый обход всех фильмов (память не зависит от размера таблицы)
+    public void forEach(Consumer<Film> consumer) {
+        flushPendingLikes();
+        filmStorage.forEach(STREAM_CHUNK_SIZE, consumer);
+    }
+
+    /////////////////////////// Краткое представление /////////////////////////
+
+    /*
+        в кратком представлении число лайков берется из счетчика, сами лайки не читаются
+        (при отложенной записи счетчик отстает от полного представления до сброса буфера)
+     */
+    public FilmSummary getSummary(long id) {
+        List<FilmSummary> summaries = filmStorage.getSummariesByIds(List.of(id));
+        if (summaries.isEmpty()) {
+            badFilm(id);
+        }
+        return summaries.get(0);
+    }
+
+    //все фильмы в кратком представлении
+    public List<FilmSummary> getAllSummaries() {
+        return filmStorage.getAllSummaries();
+    }
+
+    //страница фильмов в кратком представлении
+    public Page<FilmSummary> getSummaryPage(long after, int limit) {
+        List<FilmSummary> films = filmStorage.getSummaryPage(after, limit);
+        Long next = (films.size() < limit) ? null : films.get(films.size() - 1).getId();
+        return new Page<>(films, next);
+    }
+
+    //топовые фильмы в кратком представлении (порядок - из рейтинга в памяти)
+    public List<FilmSummary> getTopSummaries(Long count) {
+        return filmStorage.getSummariesByIds(leaderboard.getTop(count));
+    }
+
     ////////////////////////////// Запись фильмов ////////////////////////////
 
-    //добавление фильма
+    /*
+        добавление фильма
+        фильм со всеми связями пишется в одной транзакции, поэтому при ошибке
+        (например, лайке несуществующего пользователя) в базе не остается его части
+     */
+    @Transactional
     public Film create(Film film) {
         //проверяем корректность фильма
         validate(film);
-        //фильм с существующим идентификатором не допускается
+        //фильм с существующим идентификатором не допускается (нулевой id заведомо свободен)
         long id = film.getId();
-        if (filmStorage.contains(id)) {
+        if ((id > 0) && filmStorage.contains(id)) {
             log.error("Фильм с идентификатором " + id + " уже существует.");
             throw new ObjectAlreadyExistException(id);
         }
-        //создаем в базе фильм с правильным id
+        //создаем в базе фильм с правильным id вместе с жанрами и лайками
         filmStorage.create(film);
-        //сохраняем в базе жанр, рейтинг и лайки
-        storeFilmLinks(film);
+        //вносим фильм в рейтинг после фиксации транзакции
+        int likes = film.getLikes().size();
+        afterCommit(() -> leaderboard.put(film.getId(), likes));
         //возвращаем фильм
         return film;
     }
 
-    //обновление фильма
+    //обновление фильма (в одной транзакции со всеми связями)
+    @Transactional
     public Film update(Film film) {
         //проверяем корректность фильма
         validate(film);
-        //обновляем данные фильма
+        //лайки заменяются целиком, поставленные ранее и еще не записанные теряют смысл
+        likeBuffer.discard(film.getId());
+        //обновляем данные фильма и заменяем его связи
         long id = film.getId();
-        //обновляем вначале все поля из таблицы film
         if (!filmStorage.update(film)) { //ошибка, фильма нет
             log.error("фильма с идентификатором " + id + " не существует.");
             throw new ObjectNotExistException(id);
         }
-        //если удалось - обновляем связи фильма в базе
-        storeFilmLinks(film);
+        //лайки заменены целиком, обновляем рейтинг и кэш после фиксации транзакции
+        int likes = film.getLikes().size();
+        afterCommit(() -> {
+            filmCache.invalidate(id);
+            leaderboard.put(id, likes);
+        });
         //возвращаем фильм
         return film;
     }
@@ -101,19 +227,73 @@ public class FilmService {
 
     //удаление по идентификатору
     public boolean delete(long id) {
+        likeBuffer.discard(id);
         boolean result = filmStorage.delete(id);
         if (!result) {
             log.warn("Фильм " + id + " не найден или уже удален.");
+        } else {
+            filmCache.invalidate(id);
+            leaderboard.remove(id);
         }
         return result;
     }
 
     public int deleteAll() {
+        likeBuffer.discardAll();
         int count = filmStorage.deleteAll();
+        filmCache.clear();
+        leaderboard.rebuild();
         log.info("Удалено " + count + " фильмов.");
         return count;
     }
 
+    //исправляет расхождения счетчиков лайков с таблицей likes (например, после массовых операций)
+    public int repairLikeCounts() {
+        int count = likeStorage.recountLikes();
+        if (count > 0) {
+            log.warn("Исправлены счетчики лайков у " + count + " фильмов.");
+            leaderboard.rebuild();
+        }
+        return count;
+    }
+
+    //перестраивает все данные о фильмах, хранимые в памяти (нужно после изменений в базе в обход сервиса)
+    public void reload() {
+        likeBuffer.discardAll();
+        filmStorage.refresh();
+        reloadLikes();
+    }
+
+    /*
+        выполняет удаление пользователя deletion, при котором его лайки удаляются каскадно,
+        и снимает эти лайки только с затронутых фильмов рейтинга и кэша
+        фильмы читаются в одной транзакции с удалением, перестройка рейтинга не вклинивается между ними
+     */
+    public boolean deleteLikesOfUser(long userId, BooleanSupplier deletion) {
+        return leaderboard.writing(() -> {
+            Set<Long> filmIds = new LongIdSet();
+            Boolean deleted = transactionTemplate.execute((status) -> {
+                filmIds.addAll(likeStorage.getLikedFilmIds(userId));
+                return deletion.getAsBoolean();
+            });
+            if (!Boolean.TRUE.equals(deleted)) {
+                return false;
+            }
+            for (Long filmId : filmIds) {
+                leaderboard.decrement(filmId);
+                filmCache.invalidate(filmId);
+            }
+            return true;
+        });
+    }
+
+    //перестраивает данные, зависящие от лайков (нужно, например, после их каскадного удаления)
+    public void reloadLikes() {
+        filmCache.clear();
+        leaderboard.rebuild();
+        log.info("Кэш фильмов очищен, рейтинг перестроен по данным базы.");
+    }
+
     //////////////////////////////////////////////////////////////////////////
     /////////////////////////// Действия с фильмами //////////////////////////
     //////////////////////////////////////////////////////////////////////////
@@ -122,12 +302,29 @@ public class FilmService {
 
     //добавление лайка
     public void addLike(long filmId, long userId) {
-        //проверяем существование фильма
+        //проверяем существование фильма и пользователя
         if (!filmStorage.contains(filmId)) { //его нет
             badFilm(filmId); //ошибка
         }
-        //добавляем лайк
-        if (likeStorage.addLike(filmId, userId)) { //лайк добавлен
+        if (!userStorage.contains(userId)) {
+            badUser(userId);
+        }
+        //при отложенной записи только запоминаем лайк
+        if (likeBuffer.isEnabled()) {
+            likeBuffer.record(filmId, userId, true);
+            log.info("Пользователь " + userId + " добавил лайк фильму " + filmId + " (запись отложена)");
+            return;
+        }
+        //добавляем лайк (вместе с изменением рейтинга, чтобы перестройка не учла его дважды)
+        boolean added = leaderboard.writing(() -> {
+            boolean result = likeStorage.addLike(filmId, userId);
+            if (result) {
+                leaderboard.increment(filmId);
+            }
+            return result;
+        });
+        if (added) { //лайк добавлен
+            filmCache.invalidate(filmId);
             log.info("Пользователь " + userId + " добавил лайк фильму " + filmId);
         } else { //добавить не удалось
             log.warn("Пользователь " + userId + " уже ставил лайк фильму " + filmId);
@@ -136,13 +333,44 @@ public class FilmService {
 
     //получение списка лайков
     public List<User> getLikes(long filmId) {
-        if (filmStorage.get(filmId).isEmpty()) {
-            badFilm(filmId);
-        }
+        prepareLikesRead(filmId);
         log.info("Получен список лайков фильма " + filmId);
         return likeStorage.getLikes(filmId);
     }
 
+    //получение страницы лайков: пользователи с id больше after
+    public Page<User> getLikesPage(long filmId, long after, int limit) {
+        prepareLikesRead(filmId);
+        List<User> users = likeStorage.getLikesPage(filmId, after, limit);
+        Long next = (users.size() < limit) ? null : users.get(users.size() - 1).getId();
+        return new Page<>(users, next);
+    }
+
+    /*
+        потоковый обход поставивших лайки (фильм проверяется сразу, пользователи читаются при обходе)
+        лайки читаются страницами по STREAM_CHUNK_SIZE, поэтому память не зависит от их числа
+     */
+    public Consumer<Consumer<User>> streamLikes(long filmId) {
+        prepareLikesRead(filmId);
+        return (consumer) -> {
+            long after = 0;
+            List<User> chunk;
+            do {
+                chunk = likeStorage.getLikesPage(filmId, after, STREAM_CHUNK_SIZE);
+                chunk.forEach(consumer);
+                if (!chunk.isEmpty()) {
+                    after = chunk.get(chunk.size() - 1).getId();
+                }
+            } while (chunk.size() == STREAM_CHUNK_SIZE);
+        };
+    }
+
+    //число лайков фильма (по счетчику рейтинга в памяти, без обращения к базе)
+    public int getLikeCount(long filmId) {
+        prepareLikesRead(filmId);
+        return leaderboard.getLikeCount(filmId);
+    }
+
     //удаление лайка
     public boolean deleteLike(long filmId, long userId) {
         if (userId <= 0) { //такого идентификатора быть не может
@@ -150,8 +378,30 @@ public class FilmService {
             log.error(message + userId);
             throw new IncorrectParameterException(message, userId);
         }
-        boolean result = likeStorage.deleteLike(filmId, userId);
+        /*
+            при отложенной записи только запоминаем снятие лайка
+            лайк был, если это последнее незаписанное действие пользователя, а без таких действий - по базе
+         */
+        if (likeBuffer.isEnabled()) {
+            Boolean pendingLike = likeBuffer.getPending(filmId).get(userId);
+            boolean liked = (pendingLike != null) ? pendingLike : likeStorage.containsLike(filmId, userId);
+            likeBuffer.record(filmId, userId, false);
+            if (liked) {
+                log.info("Пользователь " + userId + " снял лайк с фильма " + filmId + " (запись отложена)");
+            } else {
+                log.warn("Пользователь " + userId + " не ставил лайк фильму " + filmId);
+            }
+            return liked;
+        }
+        boolean result = leaderboard.writing(() -> {
+            boolean deleted = likeStorage.deleteLike(filmId, userId);
+            if (deleted) {
+                leaderboard.decrement(filmId);
+            }
+            return deleted;
+        });
         if (result) {
+            filmCache.invalidate(filmId);
             log.info("Пользователь " + userId + " удалил лайк с фильма " + filmId);
         } else {
             log.warn("Пользователь " + userId + " не ставил лайк фильму " + filmId);
@@ -161,7 +411,125 @@ public class FilmService {
 
     //Получение 10 топовых фильмов
     public List<Film> getTopFilms(Long count) {
-        return likeStorage.getTopFilms(count);
+        //порядок берем из рейтинга в памяти, сами фильмы читаем одним пакетом
+        List<Film> films = filmStorage.getByIds(leaderboard.getTop(count));
+        if (likeBuffer.isEnabled()) { //лайки показываем с учетом отложенных, порядок - по записанным
+            for (Film film : films) {
+                LikeWriteBuffer.apply(likeBuffer.getPending(film.getId()), film.getLikes());
+            }
+        }
+        return films;
+    }
+
+    ///////////////////////////// Пакетная запись ////////////////////////////
+
+    /*
+        пакетное добавление фильмов
+        каждый фильм проверяется отдельно и получает свой результат, корректные фильмы
+        пишутся порциями, каждая порция - в своей транзакции и несколькими пакетными запросами
+     */
+    public List<BatchResult> createAll(List<Film> films) {
+        BatchResult[] results = new BatchResult[films.size()];
+        List<Integer> accepted = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            try {
+                Batches.checkConstraints(validator, film);
+                validate(film);
+                long id = film.getId();
+                if ((id > 0) && filmStorage.contains(id)) {
+                    throw new ObjectAlreadyExistException(id);
+                }
+                LongIdSet likes = film.getLikes();
+                for (int j = 0; j < likes.size(); j++) {
+                    if (!userStorage.contains(likes.getId(j))) {
+                        badUser(likes.getId(j));
+                    }
+                }
+                accepted.add(i);
+            } catch (RuntimeException e) {
+                results[i] = BatchResult.failed(i, e);
+            }
+        }
+        for (List<Integer> chunk : Batches.chunks(accepted)) {
+            List<Film> part = chunk.stream()
+                    .map(films::get)
+                    .collect(Collectors.toList());
+            try {
+                transactionTemplate.executeWithoutResult((status) -> filmStorage.createAll(part));
+            } catch (RuntimeException e) { //порция целиком откатилась
+                log.error("Не удалось записать порцию фильмов: " + e.getMessage());
+                chunk.forEach((i) -> results[i] = BatchResult.failed(i, e));
+                continue;
+            }
+            for (int i : chunk) {
+                Film film = films.get(i);
+                leaderboard.put(film.getId(), film.getLikes().size());
+                results[i] = BatchResult.ok(i, film.getId());
+            }
+        }
+        log.info("Пакетно добавлено " + accepted.size() + " фильмов из " + films.size());
+        return Arrays.asList(results);
+    }
+
+    /*
+        пакетное добавление лайков
+        каждый лайк проверяется отдельно, корректные пишутся порциями в своих транзакциях;
+        уже существующий лайк, как и в одиночном запросе, не считается ошибкой
+     */
+    public List<BatchResult> addLikes(List<LikeLink> links) {
+        BatchResult[] results = new BatchResult[links.size()];
+        List<Integer> accepted = new ArrayList<>();
+        for (int i = 0; i < links.size(); i++) {
+            LikeLink link = links.get(i);
+            try {
+                Batches.checkConstraints(validator, link);
+                if (!filmStorage.contains(link.getFilmId())) {
+                    badFilm(link.getFilmId());
+                }
+                if (!userStorage.contains(link.getUserId())) {
+                    badUser(link.getUserId());
+                }
+                accepted.add(i);
+            } catch (RuntimeException e) {
+                results[i] = BatchResult.failed(i, e);
+            }
+        }
+        if (likeBuffer.isEnabled()) { //отложенные лайки должны попасть в базу раньше пакета
+            likeBuffer.flush();
+        }
+        for (List<Integer> chunk : Batches.chunks(accepted)) {
+            long[] filmIds = new long[chunk.size()];
+            long[] userIds = new long[chunk.size()];
+            for (int j = 0; j < chunk.size(); j++) {
+                filmIds[j] = links.get(chunk.get(j)).getFilmId();
+                userIds[j] = links.get(chunk.get(j)).getUserId();
+            }
+            boolean[] added;
+            try {
+                added = leaderboard.writing(() -> {
+                    boolean[] result = transactionTemplate.execute((status) -> likeStorage.addLikes(filmIds, userIds));
+                    for (int j = 0; j < result.length; j++) {
+                        if (result[j]) {
+                            leaderboard.increment(filmIds[j]);
+                        }
+                    }
+                    return result;
+                });
+            } catch (RuntimeException e) {
+                log.error("Не удалось записать порцию лайков: " + e.getMessage());
+                chunk.forEach((i) -> results[i] = BatchResult.failed(i, e));
+                continue;
+            }
+            for (int j = 0; j < chunk.size(); j++) {
+                if (added[j]) {
+                    filmCache.invalidate(filmIds[j]);
+                }
+                results[chunk.get(j)] = BatchResult.ok(chunk.get(j), null);
+            }
+        }
+        log.info("Пакетно обработано " + accepted.size() + " лайков из " + links.size());
+        return Arrays.asList(results);
     }
 
     //////////////////////////// Поддержка жанров ////////////////////////////
@@ -196,74 +564,52 @@ public class FilmService {
         return mpaStorage.getAllMpa();
     }
 
+    //перечитывает справочники жанров и рейтингов из базы
+    public void refreshReferenceData() {
+        genreStorage.refresh();
+        mpaStorage.refresh();
+        log.info("Справочники жанров и рейтингов перечитаны из базы.");
+    }
+
     //////////////////////////////////////////////////////////////////////////
-    /////////////////////////// Оперирование связями /////////////////////////
+    ///////////////////////////// Работа с транзакциями //////////////////////
     //////////////////////////////////////////////////////////////////////////
 
-    //обновляет связи фильма в других таблицах
-    private void storeFilmLinks(Film film) {
-        //обработка жанра
-        storeFilmGenres(film);
-        //обработка рейтинга
-        storeFilmMpa(film);
-        //обработка лайков
-        storeFilmLikes(film);
-    }
-
-    //сохранение жанров фильма
-    private void storeFilmGenres(Film film) {
-        //читаем текущие жанры (их различие обеспечивается на этапе валидации)
-        List<Genre> genres = film.getGenres();
-        genreStorage.deleteFilmGenres(film.getId()); //удаляем их
-        if (genres == null) { //жанры не инициализированы
-            film.setGenres(new ArrayList<>()); //создаем пустой массив
-        } else { //жанры есть
-            genreStorage.setFilmGenres(film.getId(), genres);
+    /*
+        сбрасывает отложенные лайки перед чтением многих фильмов: накладывать их на каждый фильм
+        выдачи дороже, чем записать, а без этого выдача не показала бы лайки, уже видные в get
+     */
+    private void flushPendingLikes() {
+        if (likeBuffer.isEnabled()) {
+            likeBuffer.flush();
         }
     }
 
-    //сохранение рейтинга фильма
-    private void storeFilmMpa(Film film) {
-        //читаем текущий рейтинг фильма(он содержит идентификатор)
-        Mpa mpa = film.getMpa();
-        if (mpa.getId() == 0) { //рейтинг не задан
-            return; //обработка не требуется
+    //выполняет действие после фиксации текущей транзакции (или сразу, если транзакции нет)
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
         }
-        //читаем из базы полный рейтинг (если его нет - ошибка)
-        Mpa mpaStored = mpaStorage.getMpa(mpa.getId()).orElseThrow(() -> {
-            String message = "У фильма %d некорректный рейтинг.";
-            log.error(String.format(message, film.getId()));
-            return new IncorrectParameterException(message, film.getId());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
         });
-        //присваиваем его фильму
-        film.setMpa(mpaStored);
-    }
-
-    //сохраняет в базе лайки фильма
-    private void storeFilmLikes(Film film) {
-        //читаем текущие лайки фильма
-        long filmId = film.getId();
-        Set<Long> likes = film.getLikes();
-        if (likes == null) { //их нет
-            likes = new HashSet<>(); //создаем пустое множество лайков
-            film.setLikes(likes); //устанавливаем его
-        }
-        //удаляем все лайки, связанные с фильмом
-        likeStorage.deleteAllLikes(filmId);
-        //устанавливаем новые
-        likeStorage.storeAllLikes(filmId, likes);
     }
 
     //////////////////////////////////////////////////////////////////////////
     //////////////////////////////// Валидация ///////////////////////////////
     //////////////////////////////////////////////////////////////////////////
 
-    //проверки фильма перед операциями над ним
+    //проверки фильма перед операциями над ним (до первой записи в базу)
     private void validate(Film film) {
         validateDescription(film.getDescription());
         validateRelease(film.getReleaseDate());
         validateGenres(film);
         validateMpa(film);
+        validateLikes(film);
     }
 
     //валидация описания
@@ -297,10 +643,9 @@ public class FilmService {
                 .distinct()
                 .sorted(Comparator.comparing(Genre::getId))
                 .collect(Collectors.toList()));
-        //проверяем корректность жанров
-        List<Long> storedGenreIds = genreStorage.getAllGenreIds(); //читаем идентификаторы всех жанров из базы
-        for (Genre genre : genres) { //жанры фильма должны быть среди них
-            if ((genre == null) || !storedGenreIds.contains(genre.getId())) { //найден недопустимый жанр
+        //проверяем корректность жанров по справочнику в памяти
+        for (Genre genre : genres) {
+            if ((genre == null) || !genreStorage.containsGenre(genre.getId())) { //найден недопустимый жанр
                 String message = "У фильма %d обнаружен некорректный жанр.";
                 log.error(String.format(message, film.getId()));
                 throw new IncorrectParameterException(message, film.getId());
@@ -310,11 +655,39 @@ public class FilmService {
 
     //валидация рейтинга
     private void validateMpa(Film film) {
-        if (film.getMpa() == null) { //рейтинг не задан
+        Mpa mpa = film.getMpa();
+        if (mpa == null) { //рейтинг не задан
             film.setMpa(Mpa.builder()
                     .id(0)
                     .name("")
                     .build()); //создаем фиктивный рейтинг
+            return;
+        }
+        if (mpa.getId() == 0) { //фиктивный рейтинг
+            return;
+        }
+        //берем полный рейтинг из справочника в памяти (если его нет - ошибка)
+        film.setMpa(mpaStorage.getMpa(mpa.getId()).orElseThrow(() -> {
+            String message = "У фильма %d некорректный рейтинг.";
+            log.error(String.format(message, film.getId()));
+            return new IncorrectParameterException(message, film.getId());
+        }));
+    }
+
+    //валидация лайков
+    private void validateLikes(Film film) {
+        if (film.getLikes() == null) { //лайки не заданы
+            film.setLikes(new LongIdSet()); //создаем пустое множество
+        }
+    }
+
+    //проверяет фильм перед чтением его лайков; при отложенной записи сначала записывает его лайки
+    private void prepareLikesRead(long filmId) {
+        if (!filmStorage.contains(filmId)) {
+            badFilm(filmId);
+        }
+        if (likeBuffer.isEnabled()) {
+            likeBuffer.flush(filmId);
         }
     }
 
@@ -324,4 +697,10 @@ public class FilmService {
         log.error(String.format(message, id));
         throw new IncorrectParameterException(message, id);
     }
+
+    private void badUser(long id) {
+        String message = "Пользователь с идентификатором %d не найден.";
+        log.error(String.format(message, id));
+        throw new IncorrectParameterException(message, id);
+    }
 }
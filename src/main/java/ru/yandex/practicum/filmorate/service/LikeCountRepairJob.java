@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+//периодическая сверка счетчиков лайков (films.like_count) с таблицей likes
+@Component
+public class LikeCountRepairJob {
+    private final FilmService service;
+
+    @Autowired
+    public LikeCountRepairJob(FilmService service) {
+        this.service = service;
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.likes.recount-period-ms:3600000}",
+            fixedDelayString = "${filmorate.likes.recount-period-ms:3600000}")
+    public void run() {
+        service.repairLikeCounts();
+    }
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+//сброс отложенных лайков по таймеру; без отложенной записи (по умолчанию) не создается и не планируется
+@Component
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+public class LikeFlushScheduler {
+    private final LikeWriteBuffer likeBuffer;
+
+    @Autowired
+    public LikeFlushScheduler(LikeWriteBuffer likeBuffer) {
+        this.likeBuffer = likeBuffer;
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.likes.write-behind.flush-interval-ms:200}",
+            fixedDelayString = "${filmorate.likes.write-behind.flush-interval-ms:200}")
+    public void flush() {
+        likeBuffer.flush();
+    }
+}
@@ -0,0 +1,224 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.cache.ObjectCache;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+import ru.yandex.practicum.filmorate.storage.FilmLeaderboard;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+    Отложенная запись лайков (включается filmorate.likes.write-behind.enabled=true).
+    Поставленные и снятые лайки копятся в памяти по фильмам; повторные действия одного
+    пользователя с одним фильмом схлопываются в последнее. Буфер сбрасывается в базу пакетами
+    по таймеру (LikeFlushScheduler, flush-interval-ms - окно возможной потери при аварийной остановке),
+    при накоплении max-pending действий и при штатной остановке приложения.
+    Действия, которые не удалось записать, возвращаются в буфер и записываются при следующем сбросе.
+    Незаписанные действия накладываются на читаемый фильм, поэтому автор лайка сразу его видит;
+    перед выгрузкой всех фильмов (целиком, страницами или потоком) буфер сбрасывается.
+ */
+@Slf4j
+@Component
+public class LikeWriteBuffer {
+    private final LikeStorage likeStorage;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final FilmLeaderboard leaderboard;
+    private final ObjectCache<Film> filmCache;
+    private final boolean enabled;
+    private final int maxPending;
+    //незаписанные действия: фильм -> (пользователь -> true - лайк поставлен, false - снят)
+    //отображение фильма меняется только внутри compute по его ключу
+    private final ConcurrentMap<Long, Map<Long, Boolean>> pending = new ConcurrentHashMap<>();
+    //действия, записываемые в базу в данный момент (после передачи сюда не меняются)
+    private final ConcurrentMap<Long, Map<Long, Boolean>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    //сброс идет в одном потоке, чтобы пакеты одного фильма не переставлялись
+    private final Object flushLock = new Object();
+
+    @Autowired
+    public LikeWriteBuffer(LikeStorage likeStorage, FilmStorage filmStorage, UserStorage userStorage,
+                           FilmLeaderboard leaderboard, ObjectCache<Film> filmCache,
+                           @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                           @Value("${filmorate.likes.write-behind.max-pending:10000}") int maxPending) {
+        this.likeStorage = likeStorage;
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.leaderboard = leaderboard;
+        this.filmCache = filmCache;
+        this.enabled = enabled;
+        this.maxPending = maxPending;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    ////////////////////////////////// Запись ////////////////////////////////
+
+    //запоминает действие пользователя с лайком фильма
+    public void record(long filmId, long userId, boolean like) {
+        pending.compute(filmId, (id, intents) -> {
+            if (intents == null) {
+                intents = new LinkedHashMap<>();
+            }
+            if (intents.put(userId, like) == null) {
+                pendingCount.incrementAndGet();
+            }
+            return intents;
+        });
+        if (pendingCount.get() >= maxPending) { //буфер полон - пишем сами (это же сдерживает поток записи)
+            flush();
+        }
+    }
+
+    ////////////////////////////////// Чтение ////////////////////////////////
+
+    /*
+        возвращает незаписанные действия по фильму в порядке их совершения
+        снимок нужно брать до чтения фильма: тогда действие, записанное между снимком и чтением,
+        уже есть в базе, а наложение его еще раз ничего не меняет
+     */
+    public Map<Long, Boolean> getPending(long filmId) {
+        Map<Long, Boolean> snapshot = new LinkedHashMap<>();
+        pending.computeIfPresent(filmId, (id, intents) -> {
+            snapshot.putAll(intents);
+            return intents;
+        });
+        Map<Long, Boolean> flushing = inFlight.get(filmId); //более ранние действия
+        if (flushing == null) {
+            return snapshot;
+        }
+        Map<Long, Boolean> result = new LinkedHashMap<>(flushing);
+        result.putAll(snapshot);
+        return result;
+    }
+
+    //накладывает действия на множество лайков
+    public static void apply(Map<Long, Boolean> intents, LongIdSet likes) {
+        intents.forEach((userId, like) -> {
+            if (like) {
+                likes.addId(userId);
+            } else {
+                likes.removeId(userId);
+            }
+        });
+    }
+
+    ////////////////////////////////// Сброс /////////////////////////////////
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    //записывает в базу все накопленные действия
+    public void flush() {
+        synchronized (flushLock) {
+            for (Long filmId : pending.keySet()) {
+                flushFilm(filmId);
+            }
+        }
+    }
+
+    //записывает в базу действия по одному фильму
+    public void flush(long filmId) {
+        synchronized (flushLock) {
+            flushFilm(filmId);
+        }
+    }
+
+    //отбрасывает незаписанные действия по фильму (его лайки заменены целиком или он удален)
+    public void discard(long filmId) {
+        synchronized (flushLock) {
+            Map<Long, Boolean> intents = pending.remove(filmId);
+            if (intents != null) {
+                pendingCount.addAndGet(-intents.size());
+            }
+        }
+    }
+
+    public void discardAll() {
+        synchronized (flushLock) {
+            for (Long filmId : pending.keySet()) {
+                discard(filmId);
+            }
+        }
+    }
+
+    private void flushFilm(long filmId) {
+        //переносим действия фильма в записываемые (атомарно по отношению к record)
+        AtomicReference<Map<Long, Boolean>> taken = new AtomicReference<>();
+        pending.computeIfPresent(filmId, (id, intents) -> {
+            inFlight.put(id, intents);
+            taken.set(intents);
+            return null;
+        });
+        Map<Long, Boolean> intents = taken.get();
+        if (intents == null) {
+            return;
+        }
+        pendingCount.addAndGet(-intents.size());
+        try {
+            if (!filmStorage.contains(filmId)) {
+                log.warn("Фильм " + filmId + " удален, его лайки (" + intents.size() + ") не записаны.");
+                return;
+            }
+            //действия идут в порядке хэш-таблицы, поэтому множества строятся целиком, а не вставками
+            List<Long> addedIds = new ArrayList<>();
+            List<Long> removedIds = new ArrayList<>();
+            intents.forEach((userId, like) -> {
+                if (!like) {
+                    removedIds.add(userId);
+                } else if (userStorage.contains(userId)) { //пользователь мог быть удален после лайка
+                    addedIds.add(userId);
+                }
+            });
+            LongIdSet added = new LongIdSet(addedIds);
+            LongIdSet removed = new LongIdSet(removedIds);
+            leaderboard.writing(() -> {
+                int delta = likeStorage.applyLikes(filmId, added, removed);
+                if (delta != 0) {
+                    leaderboard.add(filmId, delta);
+                }
+                return delta;
+            });
+            filmCache.invalidate(filmId);
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать лайки фильма " + filmId + " (повтор при следующем сбросе): "
+                    + e.getMessage());
+            requeue(filmId, intents);
+        } finally {
+            inFlight.remove(filmId, intents);
+        }
+    }
+
+    //возвращает незаписанные действия в буфер; более поздние действия тех же пользователей остаются в силе
+    private void requeue(long filmId, Map<Long, Boolean> intents) {
+        pending.compute(filmId, (id, newer) -> {
+            Map<Long, Boolean> merged = new LinkedHashMap<>(intents);
+            if (newer == null) {
+                pendingCount.addAndGet(merged.size());
+                return merged;
+            }
+            merged.putAll(newer);
+            pendingCount.addAndGet(merged.size() - newer.size());
+            return merged;
+        });
+    }
+}
@@ -3,26 +3,52 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.cache.ObjectCache;
 import ru.yandex.practicum.filmorate.exception.IncorrectParameterException;
 import ru.yandex.practicum.filmorate.exception.ObjectAlreadyExistException;
 import ru.yandex.practicum.filmorate.exception.ObjectNotExistException;
 import ru.yandex.practicum.filmorate.exception.ValidateException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.FriendLink;
+import ru.yandex.practicum.filmorate.model.FriendMap;
+import ru.yandex.practicum.filmorate.model.IdLookup;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.FriendStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class UserService {
+    //число объектов, одновременно находящихся в памяти при потоковой выдаче
+    private static final int STREAM_CHUNK_SIZE = 1000;
     private final UserStorage userStorage;
     private final FriendStorage friendStorage;
+    private final FilmService filmService;
+    private final ObjectCache<User> userCache;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
 
     @Autowired
-    public UserService(UserStorage userStorage, FriendStorage friendStorage) {
+    public UserService(UserStorage userStorage, FriendStorage friendStorage, FilmService filmService,
+                       ObjectCache<User> userCache, TransactionTemplate transactionTemplate, Validator validator) {
         this.userStorage = userStorage;
         this.friendStorage = friendStorage;
+        this.filmService = filmService;
+        this.userCache = userCache;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
     }
 
     //////////////////////////////////////////////////////////////////////////
@@ -33,8 +59,8 @@ public class UserService {
 
     //получение пользователя по идентификатору
     public User get(long id) {
-        //создаем пользователя и читаем его данные из базы
-        return userStorage.get(id).orElseThrow(() -> { //пользователя нет, ошибка
+        //берем пользователя из кэша, при отсутствии - читаем его данные из базы
+        return userCache.get(id, userStorage::get).orElseThrow(() -> { //пользователя нет, ошибка
             log.error("Задан ошибочный идентификатор: " + id);
             return new IncorrectParameterException("Задан ошибочный идентификатор: ", id);
         });
@@ -46,6 +72,41 @@ public class UserService {
         return userStorage.getAll();
     }
 
+    //получение страницы пользователей, следующих за пользователем after
+    public Page<User> getPage(long after, int limit) {
+        List<User> users = userStorage.getPage(after, limit);
+        Long next = (users.size() < limit) ? null : users.get(users.size() - 1).getId();
+        return new Page<>(users, next);
+    }
+
+    /*
+        получение пользователей по списку идентификаторов (повторы отбрасываются, порядок сохраняется)
+        пользователи из кэша берутся сразу, остальные читаются одним пакетом
+     */
+    public IdLookup<User> getByIds(List<Long> ids) {
+        Map<Long, User> found = userCache.getAll(ids, (missed) -> userStorage.getByIds(missed).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity())));
+        List<User> users = new ArrayList<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            User user = found.get(id);
+            if (user == null) {
+                missing.add(id);
+            } else {
+                users.add(user);
+            }
+        }
+        if (!missing.isEmpty()) {
+            log.warn("Не найдены пользователи: " + missing);
+        }
+        return new IdLookup<>(users, missing);
+    }
+
+    //потоковый обход всех пользователей (память не зависит от размера таблицы)
+    public void forEach(Consumer<User> consumer) {
+        userStorage.forEach(STREAM_CHUNK_SIZE, consumer);
+    }
+
     /////////////////////////// Запись пользователей /////////////////////////
 
     //добавление пользователя
@@ -54,7 +115,7 @@ public class UserService {
         validate(user);
         //пользователь с существующим идентификатором не допускается
         long id = user.getId();
-        if (userStorage.get(id).isPresent()) {
+        if (userStorage.contains(id)) {
             log.error("Пользователь с идентификатором " + id + " уже существует.");
             throw new ObjectAlreadyExistException(id);
         }
@@ -62,6 +123,11 @@ public class UserService {
         userStorage.create(user);
         //сохраняем его связи в базе
         friendStorage.addFriendsOfUser(user);
+        //подтвержденные связи создают обратные, поэтому меняются и друзья
+        FriendMap friends = user.getFriends();
+        for (int i = 0; i < friends.size(); i++) {
+            userCache.invalidate(friends.getFriendId(i));
+        }
         //возвращаем пользователя
         return user;
     }
@@ -76,6 +142,7 @@ public class UserService {
             log.error("Пользователя с идентификатором " + id + " не существует.");
             throw new ObjectNotExistException(id);
         }
+        userCache.invalidate(id);
         //возвращаем пользователя
         return user;
     }
@@ -84,16 +151,26 @@ public class UserService {
 
     //удаление по идентификатору
     public boolean delete(long id) {
-        boolean result = userStorage.delete(id);
+        //вместе с пользователем каскадно удаляются его лайки: их снимаем только с лайкнутых им фильмов
+        boolean result = filmService.deleteLikesOfUser(id, () -> {
+            friendStorage.deleteFriendsOfUser(id); //связи удаляем явно, чтобы их видело хранилище друзей
+            return userStorage.delete(id);
+        });
         if (!result) {
             log.warn("Пользователь " + id + " не найден или уже удален.");
+        } else {
+            //удаленный пользователь был в друзьях у неизвестного заранее числа других
+            userCache.clear();
         }
         return result;
     }
 
     //удаление всех пользователей
     public int deleteAll() {
+        friendStorage.deleteAllFriends();
         int count = userStorage.deleteAll();
+        userCache.clear();
+        filmService.reloadLikes(); //вместе с пользователями каскадно удалены все лайки
         log.info("Удалено " + count + " пользователей.");
         return count;
     }
@@ -111,11 +188,12 @@ public class UserService {
             badUser(friendId);
         }
         if (friendStorage.addFriend(userId, friendId)) {
+            invalidateFriendship(userId, friendId);
             log.info("В друзья пользователя " + userId + " добавлен " + friendId);
         } else {
             log.warn("У пользователя " + userId + " друг " + friendId + " уже есть.");
         }
-        return userStorage.get(friendId).orElse(null); //тут ошибки быть не может
+        return get(friendId);
     }
 
     //получение списка друзей пользователя
@@ -138,10 +216,10 @@ public class UserService {
 
     //получение списка общих друзей
     public List<User> getCommonFriends(long id1, long id2) {
-        if (userStorage.get(id1).isEmpty()) {
+        if (!userStorage.contains(id1)) {
             badUser(id1);
         }
-        if (userStorage.get(id2).isEmpty()) {
+        if (!userStorage.contains(id2)) {
             badUser(id2);
         }
         log.info("Получен список общих друзей пользователей " + id1 + " и " + id2);
@@ -152,6 +230,7 @@ public class UserService {
     public boolean deleteFriend(long userId, long friendId) {
         boolean result = friendStorage.deleteFriend(userId, friendId);
         if (result) {
+            invalidateFriendship(userId, friendId);
             log.info("Из друзей пользователя " + userId + " удален " + friendId);
         } else {
             log.warn("У пользователя " + userId + " не было друга " + friendId);
@@ -159,6 +238,68 @@ public class UserService {
         return result;
     }
 
+    /*
+        пакетное добавление друзей
+        каждая связь проверяется отдельно, корректные пишутся порциями в своих транзакциях;
+        уже существующая связь, как и в одиночном запросе, не считается ошибкой
+     */
+    public List<BatchResult> addFriends(List<FriendLink> links) {
+        BatchResult[] results = new BatchResult[links.size()];
+        List<Integer> accepted = new ArrayList<>();
+        for (int i = 0; i < links.size(); i++) {
+            FriendLink link = links.get(i);
+            try {
+                Batches.checkConstraints(validator, link);
+                if (!userStorage.contains(link.getUserId())) {
+                    badUser(link.getUserId());
+                }
+                if (!userStorage.contains(link.getFriendId())) {
+                    badUser(link.getFriendId());
+                }
+                accepted.add(i);
+            } catch (RuntimeException e) {
+                results[i] = BatchResult.failed(i, e);
+            }
+        }
+        for (List<Integer> chunk : Batches.chunks(accepted)) {
+            long[] userIds = new long[chunk.size()];
+            long[] friendIds = new long[chunk.size()];
+            for (int j = 0; j < chunk.size(); j++) {
+                userIds[j] = links.get(chunk.get(j)).getUserId();
+                friendIds[j] = links.get(chunk.get(j)).getFriendId();
+            }
+            boolean[] added;
+            try {
+                added = transactionTemplate.execute((status) -> friendStorage.addFriends(userIds, friendIds));
+            } catch (RuntimeException e) {
+                log.error("Не удалось записать порцию дружеских связей: " + e.getMessage());
+                chunk.forEach((i) -> results[i] = BatchResult.failed(i, e));
+                continue;
+            }
+            for (int j = 0; j < chunk.size(); j++) {
+                if (added[j]) {
+                    invalidateFriendship(userIds[j], friendIds[j]);
+                }
+                results[chunk.get(j)] = BatchResult.ok(chunk.get(j), null);
+            }
+        }
+        log.info("Пакетно обработано " + accepted.size() + " дружеских связей из " + links.size());
+        return Arrays.asList(results);
+    }
+
+    //перестраивает данные о пользователях, хранимые в памяти (нужно после изменений в базе в обход сервиса)
+    public void reload() {
+        userStorage.refresh();
+        userCache.clear();
+        log.info("Индекс и кэш пользователей перестроены по данным базы.");
+    }
+
+    //связь меняет друзей первого пользователя и признак взаимности у второго
+    private void invalidateFriendship(long userId, long friendId) {
+        userCache.invalidate(userId);
+        userCache.invalidate(friendId);
+    }
+
     //////////////////////////////////////////////////////////////////////////
     //////////////////////////////// Валидация ///////////////////////////////
     //////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+public class DbBaseFilmStorage {
+    //максимальная длина списка идентификаторов в одном запросе
+    protected static final int CHUNK_SIZE = 1000;
+    protected NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public DbBaseFilmStorage(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /*
+        читает набор фильмов со всеми связями
+        sqlCondition - условие отбора и порядок фильмов (where ... order by ...)
+        params - параметры для условия
+     */
+    protected List<Film> getFilms(String sqlCondition, Map<String, ?> params) {
+        String sqlQuery = "select f.*, m.name from films as f " +
+                "left join mpa as m on f.mpa_id = m.id " + sqlCondition;
+        Map<Long, Film> films = new LinkedHashMap<>(); //сохраняет порядок из запроса
+        jdbcTemplate.query(sqlQuery, params, (rs) -> {
+            Film film = Film.mapRowToFilm(rs, 0);
+            film.getMpa().setName(rs.getString("mpa.name"));
+            films.put(film.getId(), film);
+        });
+        loadLinks(films);
+        return new ArrayList<>(films.values());
+    }
+
+    /*
+        подгружает лайки и жанры к уже прочитанным фильмам
+        каждая связь читается отдельным запросом по списку ключей,
+        поэтому число строк равно сумме лайков и жанров, а не их произведению
+     */
+    protected void loadLinks(Map<Long, Film> films) {
+        List<Long> ids = new ArrayList<>(films.keySet());
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("ids", ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size())));
+            //лайки
+            String sqlQuery = "select film_id, user_id from likes " +
+                    "where film_id in (:ids) " +
+                    "order by film_id, user_id";
+            jdbcTemplate.query(sqlQuery, params, (rs) -> {
+                films.get(rs.getLong("film_id")).addLike(rs.getLong("user_id"));
+            });
+            //жанры
+            loadGenres(params, (filmId, genre) -> films.get(filmId).addGenre(genre));
+        }
+    }
+
+    /*
+        читает набор фильмов в кратком представлении: вместо лайков - счетчик из строки фильма
+        sqlCondition и params - как в getFilms; таблица likes не читается
+     */
+    protected List<FilmSummary> getSummaries(String sqlCondition, Map<String, ?> params) {
+        String sqlQuery = "select f.*, m.name from films as f " +
+                "left join mpa as m on f.mpa_id = m.id " + sqlCondition;
+        Map<Long, FilmSummary> summaries = new LinkedHashMap<>(); //сохраняет порядок из запроса
+        jdbcTemplate.query(sqlQuery, params, (rs) -> {
+            FilmSummary summary = FilmSummary.mapRowToSummary(rs, 0);
+            summary.getMpa().setName(rs.getString("mpa.name"));
+            summaries.put(summary.getId(), summary);
+        });
+        List<Long> ids = new ArrayList<>(summaries.keySet());
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            Map<String, Object> genreParams = new HashMap<>();
+            genreParams.put("ids", ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size())));
+            loadGenres(genreParams, (filmId, genre) -> summaries.get(filmId).addGenre(genre));
+        }
+        return new ArrayList<>(summaries.values());
+    }
+
+    //читает жанры фильмов из списка ids и передает их потребителю по возрастанию id фильма и жанра
+    private void loadGenres(Map<String, Object> params, BiConsumer<Long, Genre> consumer) {
+        String sqlQuery = "select fg.film_id, g.id, g.name from film_genres as fg " +
+                "inner join genres as g on g.id = fg.genre_id " +
+                "where fg.film_id in (:ids) " +
+                "order by fg.film_id, g.id";
+        jdbcTemplate.query(sqlQuery, params, (rs) -> {
+            consumer.accept(rs.getLong("film_id"), Genre.builder()
+                    .id(rs.getLong("id"))
+                    .name(rs.getString("name"))
+                    .build());
+        });
+    }
+
+    //выполняет пакет запросов с параметрами (filmIds[i], ids[i]) (пустой пакет не отправляется)
+    protected void batchPairs(String sqlQuery, long[] filmIds, long[] ids) {
+        if (ids.length == 0) {
+            return;
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(sqlQuery, new BatchPreparedStatementSetter() {
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, filmIds[i]);
+                ps.setLong(2, ids[i]);
+            }
+
+            public int getBatchSize() {
+                return ids.length;
+            }
+        });
+    }
+}
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.storage;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.yandex.practicum.filmorate.model.FriendMap;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.sql.ResultSet;
@@ -42,11 +43,11 @@ public class DbBaseUserStorage {
      */
     protected List<User> getUsersWithAcknowledgedLinks(Map<Long, User> subscribers, Map<Long, List<Long>> ack) {
         for (Long friendId : subscribers.keySet()) { //цикл по друзьям
-            Map<Long, Boolean> friends = subscribers.get(friendId).getFriends(); //список всех друзей
+            FriendMap friends = subscribers.get(friendId).getFriends(); //список всех друзей
             List<Long> ackFriends = ack.get(friendId); //подтвержденные связи для friendId
             if (ackFriends != null) { //они есть
-                for (Long ackId : ack.get(friendId)) { //цикл по подтвержденным связям
-                    friends.put(ackId, true); //подтверждаем дружбу
+                for (Long ackId : ackFriends) { //цикл по подтвержденным связям
+                    friends.putFriend(ackId, true); //подтверждаем дружбу
                 }
             }
         }
@@ -1,21 +1,53 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
 
-import java.util.*;
+import javax.annotation.PostConstruct;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component("FilmDb")
-public class DbFilmStorage implements FilmStorage {
-    private final NamedParameterJdbcTemplate jdbcTemplate;
+public class DbFilmStorage extends DbBaseFilmStorage implements FilmStorage {
+    //индекс существующих идентификаторов
+    private final IdIndex idIndex = new IdIndex();
+
 
     @Autowired
     public DbFilmStorage(NamedParameterJdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+        super(jdbcTemplate);
+    }
+
+    //строит индекс идентификаторов по таблице films
+    @PostConstruct
+    @Override
+    public void refresh() {
+        idIndex.rebuild(() -> {
+            LongIdSet set = new LongIdSet();
+            jdbcTemplate.getJdbcTemplate().query("select id from films order by id asc", (rs) -> {
+                set.addId(rs.getLong("id"));
+            });
+            return set.toLongArray();
+        });
     }
 
     //////////////////////////////////////////////////////////////////////////
@@ -24,76 +56,228 @@ public class DbFilmStorage implements FilmStorage {
 
     ////////////////////////////////// Чтение ////////////////////////////////
 
-    //проверка наличия фильма
+    //проверка наличия фильма (по индексу в памяти, без обращения к базе)
     @Override
     public boolean contains(long id) {
-        String sqlQuery = "select id from films where id = ?";
-        List<Long> ids = jdbcTemplate.getJdbcTemplate().query(
-                sqlQuery, (rs, n) -> rs.getLong("id"), id);
-        return ids.size() > 0;
+        return idIndex.contains(id);
     }
 
     //получение фильма по идентификатору
     @Override
     public Optional<Film> get(long id) {
-        String sqlQuery = "select f.*, l.user_id, g.id, g.name, m.name from films as f " +
-                "left join mpa as m on f.mpa_id = m.id " +
-                "left join likes as l on f.id = l.film_id " +
-                "left join film_genres as fg on fg.film_id = f.id " +
-                "left join genres as g on g.id = fg.genre_id " +
-                "where f.id = ?";
-        Map<Long, Film> map = new HashMap<>();
-        jdbcTemplate.getJdbcTemplate().query(sqlQuery, (rs) -> {
-            Film.storeFullRow(rs, map);
-        }, id);
-        if (map.size() == 0) {
+        Map<String, Long> params = new HashMap<>();
+        params.put("id", id);
+        List<Film> films = getFilms("where f.id = :id", params);
+        if (films.size() == 0) {
             return Optional.empty();
         } else {
-            return Optional.of(map.get(id)); //фильм может быть лишь один
+            return Optional.of(films.get(0)); //фильм может быть лишь один
         }
     }
 
     //получение всех фильмов со всеми связями
     @Override
     public List<Film> getAll() {
-        String sqlQuery = "select f.*, l.user_id, g.id, g.name, m.name from films as f " +
-                "left join mpa as m on f.mpa_id = m.id " +
-                "left join likes as l on f.id = l.film_id " +
-                "left join film_genres as fg on fg.film_id = f.id " +
-                "left join genres as g on g.id = fg.genre_id";
-        Map<Long, Film> map = new HashMap<>();
-        jdbcTemplate.getJdbcTemplate().query(sqlQuery, (rs) -> {
-            Film.storeFullRow(rs, map);
-        });
-        return map.values().stream().sorted(Comparator.comparingLong(Film::getId)).collect(Collectors.toList());
+        return getFilms("order by f.id asc", new HashMap<>());
+    }
+
+    //получение страницы фильмов: не более limit фильмов с id больше after
+    @Override
+    public List<Film> getPage(long after, int limit) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("after", after);
+        params.put("limit", limit);
+        return getFilms("where f.id > :after order by f.id asc limit :limit", params);
+    }
+
+    //получение фильмов по списку идентификаторов (в порядке списка, отсутствующие пропускаются)
+    @Override
+    public List<Film> getByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("ids", ids);
+        Map<Long, Film> films = getFilms("where f.id in (:ids)", params).stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        return ids.stream()
+                .filter(films::containsKey)
+                .map(films::get)
+                .collect(Collectors.toList());
+    }
+
+    /////////////////////////// Краткое представление /////////////////////////
+
+    //все фильмы со счетчиками лайков вместо самих лайков
+    @Override
+    public List<FilmSummary> getAllSummaries() {
+        return getSummaries("order by f.id asc", new HashMap<>());
+    }
+
+    //страница фильмов в кратком представлении
+    @Override
+    public List<FilmSummary> getSummaryPage(long after, int limit) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("after", after);
+        params.put("limit", limit);
+        return getSummaries("where f.id > :after order by f.id asc limit :limit", params);
+    }
+
+    //фильмы из списка в кратком представлении (в порядке списка, отсутствующие пропускаются)
+    @Override
+    public List<FilmSummary> getSummariesByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("ids", ids);
+        Map<Long, FilmSummary> summaries = getSummaries("where f.id in (:ids)", params).stream()
+                .collect(Collectors.toMap(FilmSummary::getId, Function.identity()));
+        return ids.stream()
+                .filter(summaries::containsKey)
+                .map(summaries::get)
+                .collect(Collectors.toList());
     }
 
     ////////////////////////////////// Создание //////////////////////////////
 
+    /*
+        создает фильм вместе с жанрами и лайками в одной транзакции:
+        строка фильма (с готовым счетчиком лайков) и по одному пакетному запросу на каждую связь
+     */
     @Override
+    @Transactional
     public void create(Film film) {
         //добавляем фильм и возвращаем присвоенный ему идентификатор
         SimpleJdbcInsert simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate.getJdbcTemplate())
                 .withTableName("films")
+                .usingColumns("name", "description", "release_date", "duration", "mpa_id", "like_count")
                 .usingGeneratedKeyColumns("id");
-        long id = simpleJdbcInsert.executeAndReturnKey(film.toMap()).longValue();
+        Map<String, Object> params = film.toMap();
+        params.put("like_count", film.getLikes().size());
+        long id = simpleJdbcInsert.executeAndReturnKey(params).longValue();
         //устанавливаем фильму правильный идентификатор
         film.setId(id);
+        idIndex.add(id);
+        //сохраняем связи
+        insertGenres(id, film.getGenres());
+        insertLikes(id, film.getLikes());
+    }
+
+    /*
+        создает пакет фильмов вместе с их связями в одной транзакции:
+        строки всех фильмов вставляются одним пакетным запросом с возвратом ключей,
+        жанры и лайки всех фильмов - еще двумя пакетами
+     */
+    @Override
+    @Transactional
+    public void createAll(List<Film> films) {
+        if (films.isEmpty()) {
+            return;
+        }
+        String sqlQuery = "insert into films (name, description, release_date, duration, mpa_id, like_count) " +
+                "values (?, ?, ?, ?, ?, ?)";
+        List<Long> keys = jdbcTemplate.getJdbcTemplate().execute((Connection connection) -> {
+            try (PreparedStatement ps = connection.prepareStatement(sqlQuery, new String[]{"id"})) {
+                for (Film film : films) {
+                    ps.setString(1, film.getName());
+                    ps.setString(2, film.getDescription());
+                    ps.setObject(3, film.getReleaseDate());
+                    ps.setInt(4, film.getDuration());
+                    ps.setLong(5, film.getMpa().getId());
+                    ps.setInt(6, film.getLikes().size());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                List<Long> ids = new ArrayList<>();
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        ids.add(rs.getLong(1));
+                    }
+                }
+                return ids;
+            }
+        });
+        if ((keys == null) || (keys.size() != films.size())) { //драйвер вернул не все ключи
+            throw new IllegalStateException("Не получены идентификаторы созданных фильмов.");
+        }
+        //устанавливаем фильмам правильные идентификаторы и собираем связи всех фильмов
+        int linkCount = 0;
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(keys.get(i));
+            idIndex.add(film.getId());
+            linkCount += film.getGenres().size() + film.getLikes().size();
+        }
+        long[] genreFilms = new long[linkCount];
+        long[] genreIds = new long[linkCount];
+        long[] likeFilms = new long[linkCount];
+        long[] likeUsers = new long[linkCount];
+        int genreCount = 0;
+        int likeCount = 0;
+        for (Film film : films) {
+            LongIdSet genres = new LongIdSet();
+            for (Genre genre : film.getGenres()) {
+                genres.addId(genre.getId());
+            }
+            for (int i = 0; i < genres.size(); i++) {
+                genreFilms[genreCount] = film.getId();
+                genreIds[genreCount++] = genres.getId(i);
+            }
+            LongIdSet likes = film.getLikes();
+            for (int i = 0; i < likes.size(); i++) {
+                likeFilms[likeCount] = film.getId();
+                likeUsers[likeCount++] = likes.getId(i);
+            }
+        }
+        batchPairs("insert into film_genres (film_id, genre_id) values (?, ?)",
+                Arrays.copyOf(genreFilms, genreCount), Arrays.copyOf(genreIds, genreCount));
+        batchPairs("insert into likes (film_id, user_id) values (?, ?)",
+                Arrays.copyOf(likeFilms, likeCount), Arrays.copyOf(likeUsers, likeCount));
     }
 
     ///////////////////////////////// Обновление /////////////////////////////
 
+    /*
+        обновляет фильм и его связи в одной транзакции
+        связи не переписываются целиком: текущие жанры и лайки читаются одним запросом,
+        после чего удаляются и добавляются только отличающиеся строки
+     */
     @Override
+    @Transactional
     public boolean update(Film film) {
         //формируем блок параметров
         Map<String, Object> params = film.toMap(); //из таблицы films (кроме id)
         params.put("id", film.getId()); //id устанавливаем отдельно
+        params.put("like_count", film.getLikes().size()); //лайки заменяются целиком
         //определяем запрос
         String sqlQuery = "update films set name = :name, description = :description, " +
                 "release_date = :release_date, duration = :duration, " +
-                "mpa_id = :mpa_id where id = :id";
+                "mpa_id = :mpa_id, like_count = :like_count where id = :id";
         //выполняем обновление
-        return jdbcTemplate.update(sqlQuery, params) > 0; //признак обновления
+        if (jdbcTemplate.update(sqlQuery, params) == 0) { //фильма нет
+            return false;
+        }
+        //читаем текущие связи
+        long id = film.getId();
+        LongIdSet storedGenres = new LongIdSet();
+        LongIdSet storedLikes = new LongIdSet();
+        sqlQuery = "select 0 as kind, genre_id as link_id from film_genres where film_id = ? " +
+                "union all " +
+                "select 1 as kind, user_id as link_id from likes where film_id = ? " +
+                "order by kind, link_id";
+        jdbcTemplate.getJdbcTemplate().query(sqlQuery, (rs) -> {
+            LongIdSet links = (rs.getInt("kind") == 0) ? storedGenres : storedLikes;
+            links.addId(rs.getLong("link_id"));
+        }, id, id);
+        //вносим только разницу
+        LongIdSet genres = new LongIdSet();
+        for (Genre genre : film.getGenres()) {
+            genres.addId(genre.getId());
+        }
+        syncLinks("film_genres", "genre_id", id, storedGenres, genres);
+        syncLinks("likes", "user_id", id, storedLikes, LongIdSet.of(film.getLikes()));
+        return true;
     }
 
     ////////////////////////////////// Удаление //////////////////////////////
@@ -101,12 +285,81 @@ public class DbFilmStorage implements FilmStorage {
     @Override
     public boolean delete(long id) {
         String sqlQuery = "delete from films where id = ?";
-        return jdbcTemplate.getJdbcTemplate().update(sqlQuery, id) > 0;
+        boolean result = jdbcTemplate.getJdbcTemplate().update(sqlQuery, id) > 0;
+        idIndex.remove(id);
+        return result;
     }
 
     @Override
     public int deleteAll() {
         String sqlQuery = "delete from films";
-        return jdbcTemplate.getJdbcTemplate().update(sqlQuery);
+        int count = jdbcTemplate.getJdbcTemplate().update(sqlQuery);
+        idIndex.clear();
+        return count;
+    }
+
+    ////////////////////////////// Запись связей /////////////////////////////
+
+    //сохраняет жанры фильма одним пакетом
+    private void insertGenres(long filmId, List<Genre> genres) {
+        LongIdSet ids = new LongIdSet();
+        for (Genre genre : genres) { //двойники, различающиеся лишь названием, схлопываются
+            ids.addId(genre.getId());
+        }
+        batchLinks("insert into film_genres (film_id, genre_id) values (?, ?)", filmId, ids.toLongArray());
+    }
+
+    //сохраняет лайки фильма одним пакетом
+    private void insertLikes(long filmId, Set<Long> likes) {
+        batchLinks("insert into likes (film_id, user_id) values (?, ?)", filmId,
+                LongIdSet.of(likes).toLongArray());
+    }
+
+    /*
+        приводит связи фильма в таблице table к множеству target
+        stored - связи, уже записанные в базе; column - столбец связанного объекта
+        одним слиянием отсортированных массивов находятся лишние и недостающие связи,
+        затем выполняется не более одного пакета удалений и одного пакета вставок
+     */
+    private void syncLinks(String table, String column, long filmId, LongIdSet stored, LongIdSet target) {
+        long[] old = stored.toLongArray();
+        long[] current = target.toLongArray();
+        long[] removed = new long[old.length];
+        long[] added = new long[current.length];
+        int removedCount = 0;
+        int addedCount = 0;
+        int i = 0;
+        int j = 0;
+        while ((i < old.length) || (j < current.length)) {
+            if ((j == current.length) || ((i < old.length) && (old[i] < current[j]))) {
+                removed[removedCount++] = old[i++];
+            } else if ((i == old.length) || (old[i] > current[j])) {
+                added[addedCount++] = current[j++];
+            } else { //связь не изменилась
+                i++;
+                j++;
+            }
+        }
+        batchLinks(String.format("delete from %s where film_id = ? and %s = ?", table, column),
+                filmId, Arrays.copyOf(removed, removedCount));
+        batchLinks(String.format("insert into %s (film_id, %s) values (?, ?)", table, column),
+                filmId, Arrays.copyOf(added, addedCount));
+    }
+
+    //выполняет пакет запросов с параметрами (filmId, id) для каждого id (пустой пакет не отправляется)
+    private void batchLinks(String sqlQuery, long filmId, long[] ids) {
+        if (ids.length == 0) {
+            return;
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(sqlQuery, new BatchPreparedStatementSetter() {
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, filmId);
+                ps.setLong(2, ids[i]);
+            }
+
+            public int getBatchSize() {
+                return ids.length;
+            }
+        });
     }
 }
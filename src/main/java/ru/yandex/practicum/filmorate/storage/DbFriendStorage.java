@@ -1,20 +1,28 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.FriendMap;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Component("friendDb")
+@ConditionalOnProperty(name = "filmorate.friends.storage", havingValue = "db", matchIfMissing = true)
 public class DbFriendStorage extends DbBaseUserStorage implements FriendStorage {
+    //максимальная длина списка идентификаторов в одном запросе
+    private static final int CHUNK_SIZE = 1000;
 
     public DbFriendStorage(NamedParameterJdbcTemplate jdbcTemplate) {
         super(jdbcTemplate);
@@ -36,27 +44,37 @@ public class DbFriendStorage extends DbBaseUserStorage implements FriendStorage
     public void addFriendsOfUser(User user) {
         long userId = user.getId();
         //читаем друзей
-        Map<Long, Boolean> friends = user.getFriends();
+        FriendMap friends = user.getFriends();
         if (friends == null) { //друзья не заданы
-            user.setFriends(new HashMap<>()); //устанавливаем пустой набор друзей
+            user.setFriends(new FriendMap()); //устанавливаем пустой набор друзей
             return; //в базе менять нечего
         }
+        if (friends.size() == 0) { //пустой пакет - все равно обращение к базе, его не отправляем
+            return;
+        }
         //устанавливаем прямые связи
-        List<Long> friendIds = new ArrayList<>(friends.keySet());
         jdbcTemplate.getJdbcTemplate().batchUpdate(
                 "merge into friends (user_id, friend_id) values (?, ?) ",
                 new BatchPreparedStatementSetter() {
                     public void setValues(PreparedStatement ps, int i) throws SQLException {
                         ps.setLong(1, userId);
-                        ps.setLong(2, friendIds.get(i));
+                        ps.setLong(2, friends.getFriendId(i));
                     }
 
                     public int getBatchSize() {
-                        return friendIds.size();
+                        return friends.size();
                     }
                 });
         //устанавливаем обратные связи
-        List<Long> ackFriendIds = friendIds.stream().filter(friends::get).collect(Collectors.toList());
+        List<Long> ackFriendIds = new ArrayList<>();
+        for (int i = 0; i < friends.size(); i++) {
+            if (friends.isAcknowledgedAt(i)) {
+                ackFriendIds.add(friends.getFriendId(i));
+            }
+        }
+        if (ackFriendIds.isEmpty()) {
+            return;
+        }
         jdbcTemplate.getJdbcTemplate().batchUpdate(
                 "merge into friends (user_id, friend_id) values (?, ?) ",
                 new BatchPreparedStatementSetter() {
@@ -71,16 +89,88 @@ public class DbFriendStorage extends DbBaseUserStorage implements FriendStorage
                 });
     }
 
+    /*
+        добавляет пакет связей: пользователь userIds[i] добавляет в друзья friendIds[i]
+        уже существующие связи и повторы внутри пакета отсеиваются одним запросом на порцию пар,
+        новые вставляются одним пакетом; возвращает признак добавления для каждой пары
+     */
+    @Override
+    @Transactional
+    public boolean[] addFriends(long[] userIds, long[] friendIds) {
+        //читаем уже существующие связи (с запасом: по всем сочетаниям пользователей порции)
+        Map<Long, LongIdSet> links = new HashMap<>();
+        String sqlQuery = "select user_id, friend_id from friends " +
+                "where user_id in (:users) and friend_id in (:friends)";
+        for (int from = 0; from < userIds.length; from += CHUNK_SIZE) {
+            Set<Long> users = new HashSet<>();
+            Set<Long> friends = new HashSet<>();
+            for (int i = from; i < Math.min(from + CHUNK_SIZE, userIds.length); i++) {
+                users.add(userIds[i]);
+                friends.add(friendIds[i]);
+            }
+            Map<String, Object> params = new HashMap<>();
+            params.put("users", users);
+            params.put("friends", friends);
+            jdbcTemplate.query(sqlQuery, params, (rs) -> {
+                links.computeIfAbsent(rs.getLong("user_id"), (id) -> new LongIdSet())
+                        .addId(rs.getLong("friend_id"));
+            });
+        }
+        //отбираем новые связи
+        boolean[] added = new boolean[userIds.length];
+        List<Integer> inserts = new ArrayList<>();
+        for (int i = 0; i < userIds.length; i++) {
+            if (links.computeIfAbsent(userIds[i], (id) -> new LongIdSet()).addId(friendIds[i])) {
+                added[i] = true;
+                inserts.add(i);
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.getJdbcTemplate().batchUpdate(
+                    "insert into friends (user_id, friend_id) values (?, ?)",
+                    new BatchPreparedStatementSetter() {
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            ps.setLong(1, userIds[inserts.get(i)]);
+                            ps.setLong(2, friendIds[inserts.get(i)]);
+                        }
+
+                        public int getBatchSize() {
+                            return inserts.size();
+                        }
+                    });
+        }
+        return added;
+    }
+
+    //массовая загрузка заведомо новых связей (без проверки существования, повтор связи - ошибка)
+    @Override
+    public void loadFriends(long[] userIds, long[] friendIds) {
+        if (userIds.length == 0) {
+            return;
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate("insert into friends (user_id, friend_id) values (?, ?)",
+                new BatchPreparedStatementSetter() {
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, userIds[i]);
+                        ps.setLong(2, friendIds[i]);
+                    }
+
+                    public int getBatchSize() {
+                        return userIds.length;
+                    }
+                });
+    }
+
     ///////////////////////////// Получение друзей ///////////////////////////
 
     //получение всех подписчиков
     @Override
     public List<User> getFriends(long id) {
         //читаем друзей с неподтвержденными связями
+        //(друзья отбираются подзапросом: при соединении H2 перебирал всю таблицу users)
         String sqlQuery = "select u.*, f.friend_id from users as u " +
-                "inner join friends as uf on uf.friend_id = u.id " +
                 "left join friends as f on f.user_id = u.id " +
-                "where uf.user_id = ? " +
+                "where u.id in (select friend_id from friends where user_id = ?) " +
                 "order by u.id asc";
         Map<Long, User> friendsMap = new HashMap<>();
         jdbcTemplate.getJdbcTemplate().query(sqlQuery, (rs) -> {
@@ -123,9 +213,9 @@ public class DbFriendStorage extends DbBaseUserStorage implements FriendStorage
         //читаем общих друзей с неподтвержденными связями
         String sqlQuery = "select u.*, l.friend_id from friends as l " +
                 "right join users as u on u.id = l.user_id " +
-                "inner join friends as f1 on u.id = f1.friend_id " +
+                "where u.id in (select f1.friend_id from friends as f1 " +
                 "inner join friends as f2 on f1.friend_id = f2.friend_id " +
-                "where f1.user_id = ? and f2.user_id = ? " +
+                "where f1.user_id = ? and f2.user_id = ?) " +
                 "order by u.id asc";
         Map<Long, User> friendsMap = new HashMap<>();
         jdbcTemplate.getJdbcTemplate().query(
@@ -152,4 +242,19 @@ public class DbFriendStorage extends DbBaseUserStorage implements FriendStorage
         String sqlQuery = "delete from friends where user_id = :user_id and friend_id = :friend_id";
         return jdbcTemplate.update(sqlQuery, mapIds(userId, friendId)) > 0;
     }
+
+    //удаление всех связей пользователя (в обе стороны)
+    @Override
+    public void deleteFriendsOfUser(long userId) {
+        //два запроса вместо одного с "or": каждый идет по своему индексу, без перебора таблицы
+        jdbcTemplate.getJdbcTemplate().update("delete from friends where user_id = ?", userId);
+        jdbcTemplate.getJdbcTemplate().update("delete from friends where friend_id = ?", userId);
+    }
+
+    //удаление всех связей
+    @Override
+    public void deleteAllFriends() {
+        String sqlQuery = "delete from friends";
+        jdbcTemplate.getJdbcTemplate().update(sqlQuery);
+    }
 }
\ No newline at end of file
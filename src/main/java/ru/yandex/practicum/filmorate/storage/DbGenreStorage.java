@@ -1,68 +1,84 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Genre;
 
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 @Component("GenreDb")
 public class DbGenreStorage implements GenreStorage {
     private final NamedParameterJdbcTemplate jdbcTemplate;
+    //снимок справочника жанров: элемент с индексом id - жанр с этим id (или null)
+    private volatile Genre[] genres = new Genre[0];
 
     @Autowired
     public DbGenreStorage(NamedParameterJdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    ////////////////////////// Поддержка справочника /////////////////////////
+
+    //перечитывает справочник жанров из базы
+    @PostConstruct
+    @Override
+    public void refresh() {
+        String sqlQuery = "select * from genres order by id asc";
+        List<Genre> list = jdbcTemplate.getJdbcTemplate().query(sqlQuery, Genre::mapRowToGenre);
+        int size = list.isEmpty() ? 0 : (int) list.get(list.size() - 1).getId() + 1;
+        Genre[] snapshot = new Genre[size];
+        for (Genre genre : list) {
+            snapshot[(int) genre.getId()] = genre;
+        }
+        genres = snapshot; //подменяем снимок целиком
+    }
+
+    //проверяет наличие жанра (без обращения к базе и без создания объектов)
+    @Override
+    public boolean containsGenre(long genreId) {
+        Genre[] snapshot = genres;
+        return (genreId > 0) && (genreId < snapshot.length) && (snapshot[(int) genreId] != null);
+    }
+
     //////////////////////////// Поддержка жанров ////////////////////////////
 
     //возвращает жанр по идентификатору
     @Override
     public Optional<Genre> getGenre(long genreId) {
-        String sqlQuery = "select * from genres where id = ?";
-        List<Genre> genres = jdbcTemplate.getJdbcTemplate().query(
-                sqlQuery, Genre::mapRowToGenre, genreId);
-        if (genres.size() == 0) {
+        Genre[] snapshot = genres;
+        if ((genreId <= 0) || (genreId >= snapshot.length) || (snapshot[(int) genreId] == null)) {
             return Optional.empty();
         } else {
-            return Optional.of(genres.get(0));
+            return Optional.of(copy(snapshot[(int) genreId]));
         }
     }
 
-    //возвращает полный список жанров из базы
+    //возвращает полный список жанров
     @Override
     public List<Genre> getAllGenres() {
-        String sqlQuery = "select * from genres order by id asc";
-        return jdbcTemplate.getJdbcTemplate().query(sqlQuery, Genre::mapRowToGenre);
+        List<Genre> list = new ArrayList<>();
+        for (Genre genre : genres) {
+            if (genre != null) {
+                list.add(copy(genre));
+            }
+        }
+        return list;
     }
 
-    //возвращает полный список идентификаторов жанров из базы
+    //возвращает полный список идентификаторов жанров
     @Override
     public List<Long> getAllGenreIds() {
-        String sqlQuery = "select id from genres order by id asc";
-        return jdbcTemplate.getJdbcTemplate().query(sqlQuery, (r, n) -> r.getLong("id"));
-    }
-
-    public void setFilmGenres(Long filmId, List<Genre> genres) {
-        jdbcTemplate.getJdbcTemplate().batchUpdate(
-                "merge into film_genres (film_id, genre_id) values (?, ?) ",
-                new BatchPreparedStatementSetter() {
-                    public void setValues(PreparedStatement ps, int i) throws SQLException {
-                        ps.setLong(1, filmId);
-                        Genre genre = genres.get(i);
-                        ps.setLong(2, genre.getId());
-                    }
-
-                    public int getBatchSize() {
-                        return genres.size();
-                    }
-                });
+        List<Long> list = new ArrayList<>();
+        for (Genre genre : genres) {
+            if (genre != null) {
+                list.add(genre.getId());
+            }
+        }
+        return list;
     }
 
     //возвращает все жанры заданного фильма
@@ -75,10 +91,13 @@ public class DbGenreStorage implements GenreStorage {
         return jdbcTemplate.getJdbcTemplate().query(sqlQuery, Genre::mapRowToGenre, filmId);
     }
 
-    //обнуляет массив жанров фильма
-    @Override
-    public void deleteFilmGenres(long filmId) {
-        String sqlQuery = "delete from film_genres where film_id = ?";
-        jdbcTemplate.getJdbcTemplate().update(sqlQuery, filmId);
+    //////////////////////////// Поддержка маппинга //////////////////////////
+
+    //жанры снимка наружу отдаются копиями, чтобы их нельзя было изменить
+    private static Genre copy(Genre genre) {
+        return Genre.builder()
+                .id(genre.getId())
+                .name(genre.getName())
+                .build();
     }
 }
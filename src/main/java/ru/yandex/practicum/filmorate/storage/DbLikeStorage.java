@@ -4,21 +4,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Component("LikeDb")
-public class DbLikeStorage implements LikeStorage {
-    private final NamedParameterJdbcTemplate jdbcTemplate;
+public class DbLikeStorage extends DbBaseFilmStorage implements LikeStorage {
 
     @Autowired
     public DbLikeStorage(NamedParameterJdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+        super(jdbcTemplate);
     }
 
     //////////////////////////// Поддержка лайков ////////////////////////////
@@ -33,74 +33,233 @@ public class DbLikeStorage implements LikeStorage {
         return jdbcTemplate.getJdbcTemplate().query(sqlQuery, User::mapRowToUser, filmId);
     }
 
+    /*
+        выдает страницу поставивших лайки: не более limit пользователей с id больше after
+        страница сначала выбирается из первичного ключа likes (film_id, user_id) - сортировка
+        по полному ключу позволяет H2 остановиться после limit строк, - и только потом
+        соединяется с users (при прямом соединении H2 перебирает всю таблицу users)
+     */
+    @Override
+    public List<User> getLikesPage(long filmId, long after, int limit) {
+        String sqlQuery = "select u.id, u.login, u.name, u.email, u.birthday from " +
+                "(select film_id, user_id from likes where film_id = ? and user_id > ? " +
+                "order by film_id, user_id limit ?) as l " +
+                "inner join users as u on u.id = l.user_id " +
+                "order by u.id asc";
+        return jdbcTemplate.getJdbcTemplate().query(sqlQuery, User::mapRowToUser, filmId, after, limit);
+    }
+
     //выдает список идентификаторов пользователей, поставивших лайки на фильм
     @Override
     public Set<Long> getLikeIds(long filmId) {
-        String sqlQuery = "select user_id from likes where film_id = ?";
-        return new HashSet<>(jdbcTemplate.getJdbcTemplate().query(sqlQuery,
-                (rs, n) -> rs.getLong("user_id"), filmId));
+        //по возрастанию (порядок первичного ключа): идентификаторы дописываются в конец множества
+        String sqlQuery = "select user_id from likes where film_id = ? order by user_id";
+        LongIdSet likes = new LongIdSet();
+        jdbcTemplate.getJdbcTemplate().query(sqlQuery, (rs) -> {
+            likes.addId(rs.getLong("user_id"));
+        }, filmId);
+        return likes;
     }
 
-    //добавляет лайк фильму
+    //выдает идентификаторы фильмов, которым пользователь поставил лайк (по индексу likes_user_id_idx)
     @Override
-    public boolean addLike(long filmId, long userId) {
-        //В Postgre заменить конструкцией insert ... on conflict do nothing
-        String sqlQuery = "merge into likes (film_id, user_id) " +
-                "values (:film_id, :user_id)";
-        return jdbcTemplate.update(sqlQuery, mapLikeIds(filmId, userId)) > 0;
+    public Set<Long> getLikedFilmIds(long userId) {
+        String sqlQuery = "select film_id from likes where user_id = ? order by film_id";
+        LongIdSet films = new LongIdSet();
+        jdbcTemplate.getJdbcTemplate().query(sqlQuery, (rs) -> {
+            films.addId(rs.getLong("film_id"));
+        }, userId);
+        return films;
     }
 
+    //проверяет наличие лайка (поиск по первичному ключу)
     @Override
-    public void storeAllLikes(Long filmId, Set<Long> likes) {
-        List<Long> list = new ArrayList<>(likes);
-        jdbcTemplate.getJdbcTemplate().batchUpdate(
-                "merge into likes (film_id, user_id) values (?, ?)",
-                new BatchPreparedStatementSetter() {
-                    public void setValues(PreparedStatement ps, int i) throws SQLException {
-                        ps.setLong(1, filmId);
-                        ps.setLong(2, list.get(i));
-                    }
-
-                    public int getBatchSize() {
-                        return list.size();
-                    }
-                });
+    public boolean containsLike(long filmId, long userId) {
+        String sqlQuery = "select count(*) from likes where film_id = :film_id and user_id = :user_id";
+        Integer count = jdbcTemplate.queryForObject(sqlQuery, mapLikeIds(filmId, userId), Integer.class);
+        return (count != null) && (count > 0);
+    }
+
+    //добавляет лайк фильму
+    @Override
+    @Transactional
+    public boolean addLike(long filmId, long userId) {
+        //В Postgre заменить конструкцией insert ... on conflict do nothing
+        //(merge в H2 сообщает об изменении и для уже существующей строки, что сбивает счетчики лайков);
+        //существующий лайк отсеивается условием, а не ошибкой ключа, которая испортила бы транзакцию
+        String sqlQuery = "insert into likes (film_id, user_id) " +
+                "select :film_id, :user_id where not exists " +
+                "(select 1 from likes where film_id = :film_id and user_id = :user_id)";
+        if (jdbcTemplate.update(sqlQuery, mapLikeIds(filmId, userId)) == 0) { //такой лайк уже есть
+            return false;
+        }
+        changeLikeCount(filmId, 1);
+        return true;
     }
 
     //убирает лайк с фильма
     @Override
+    @Transactional
     public boolean deleteLike(long filmId, long userId) {
         String sqlQuery = "delete from likes where film_id = :film_id  and user_id = :user_id";
-        return jdbcTemplate.update(sqlQuery, mapLikeIds(filmId, userId)) > 0;
+        if (jdbcTemplate.update(sqlQuery, mapLikeIds(filmId, userId)) == 0) {
+            return false;
+        }
+        changeLikeCount(filmId, -1);
+        return true;
+    }
+
+    /*
+        применяет к фильму пакет изменений лайков: added - поставленные, removed - снятые
+        (одного пользователя не может быть в обоих наборах)
+        уже существующие и отсутствующие лайки отсеиваются одним запросом на порцию id,
+        остальные пишутся пакетами; возвращает изменение числа лайков фильма
+     */
+    @Override
+    @Transactional
+    public int applyLikes(long filmId, LongIdSet added, LongIdSet removed) {
+        //читаем, какие из затронутых лайков уже есть в базе
+        LongIdSet existing = new LongIdSet();
+        LongIdSet touchedSet = added.copy();
+        for (int i = 0; i < removed.size(); i++) {
+            touchedSet.addId(removed.getId(i));
+        }
+        long[] touched = touchedSet.toLongArray();
+        String sqlQuery = "select user_id from likes where film_id = :film_id and user_id in (:ids)";
+        for (int from = 0; from < touched.length; from += CHUNK_SIZE) {
+            List<Long> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(from + CHUNK_SIZE, touched.length); i++) {
+                chunk.add(touched[i]);
+            }
+            Map<String, Object> params = new HashMap<>();
+            params.put("film_id", filmId);
+            params.put("ids", chunk);
+            jdbcTemplate.query(sqlQuery, params, (rs) -> {
+                existing.addId(rs.getLong("user_id"));
+            });
+        }
+        //оставляем только действительные изменения
+        LongIdSet inserts = new LongIdSet();
+        LongIdSet deletes = new LongIdSet();
+        for (int i = 0; i < added.size(); i++) {
+            if (!existing.containsId(added.getId(i))) {
+                inserts.addId(added.getId(i));
+            }
+        }
+        for (int i = 0; i < removed.size(); i++) {
+            if (existing.containsId(removed.getId(i))) {
+                deletes.addId(removed.getId(i));
+            }
+        }
+        batchLikes("insert into likes (film_id, user_id) values (?, ?)", filmId, inserts.toLongArray());
+        batchLikes("delete from likes where film_id = ? and user_id = ?", filmId, deletes.toLongArray());
+        int delta = inserts.size() - deletes.size();
+        if (delta != 0) {
+            changeLikeCount(filmId, delta);
+        }
+        return delta;
+    }
+
+    /*
+        добавляет пакет лайков разным фильмам: пользователь userIds[i] ставит лайк фильму filmIds[i]
+        уже существующие лайки и повторы внутри пакета отсеиваются одним запросом на порцию пар,
+        новые вставляются одним пакетом, счетчики фильмов меняются еще одним;
+        возвращает признак добавления для каждой пары
+     */
+    @Override
+    @Transactional
+    public boolean[] addLikes(long[] filmIds, long[] userIds) {
+        //читаем уже существующие лайки (с запасом: по всем сочетаниям фильмов и пользователей порции)
+        Map<Long, LongIdSet> likes = new HashMap<>();
+        String sqlQuery = "select film_id, user_id from likes where film_id in (:films) and user_id in (:users)";
+        for (int from = 0; from < filmIds.length; from += CHUNK_SIZE) {
+            Set<Long> films = new HashSet<>();
+            Set<Long> users = new HashSet<>();
+            for (int i = from; i < Math.min(from + CHUNK_SIZE, filmIds.length); i++) {
+                films.add(filmIds[i]);
+                users.add(userIds[i]);
+            }
+            Map<String, Object> params = new HashMap<>();
+            params.put("films", films);
+            params.put("users", users);
+            jdbcTemplate.query(sqlQuery, params, (rs) -> {
+                likes.computeIfAbsent(rs.getLong("film_id"), (id) -> new LongIdSet()).addId(rs.getLong("user_id"));
+            });
+        }
+        //отбираем новые лайки и считаем прирост счетчиков
+        boolean[] added = new boolean[filmIds.length];
+        long[] insertFilms = new long[filmIds.length];
+        long[] insertUsers = new long[filmIds.length];
+        int count = 0;
+        Map<Long, Integer> deltas = new LinkedHashMap<>();
+        for (int i = 0; i < filmIds.length; i++) {
+            if (likes.computeIfAbsent(filmIds[i], (id) -> new LongIdSet()).addId(userIds[i])) {
+                added[i] = true;
+                insertFilms[count] = filmIds[i];
+                insertUsers[count++] = userIds[i];
+                deltas.merge(filmIds[i], 1, Integer::sum);
+            }
+        }
+        batchPairs("insert into likes (film_id, user_id) values (?, ?)",
+                Arrays.copyOf(insertFilms, count), Arrays.copyOf(insertUsers, count));
+        //меняем счетчики
+        List<Map.Entry<Long, Integer>> changes = new ArrayList<>(deltas.entrySet());
+        if (!changes.isEmpty()) {
+            jdbcTemplate.getJdbcTemplate().batchUpdate("update films set like_count = like_count + ? where id = ?",
+                    new BatchPreparedStatementSetter() {
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            ps.setInt(1, changes.get(i).getValue());
+                            ps.setLong(2, changes.get(i).getKey());
+                        }
+
+                        public int getBatchSize() {
+                            return changes.size();
+                        }
+                    });
+        }
+        return added;
     }
 
-    //удаляет все лайки с фильма
+    //сверяет счетчики лайков с таблицей likes, возвращает число исправленных фильмов
     @Override
-    public void deleteAllLikes(long filmId) {
-        String sqlQuery = "delete from likes where film_id = ?";
-        jdbcTemplate.getJdbcTemplate().update(sqlQuery, filmId);
+    @Transactional
+    public int recountLikes() {
+        String sqlQuery = "update films as f set like_count = " +
+                "(select count(*) from likes as l where l.film_id = f.id) " +
+                "where like_count <> (select count(*) from likes as l where l.film_id = f.id)";
+        return jdbcTemplate.getJdbcTemplate().update(sqlQuery);
     }
 
     //возвращает хит фильмов (по числу лайков)
     @Override
     public List<Film> getTopFilms(Long count) {
-        String sqlQuery = "select f.*, l.user_id, g.id, g.name, m.name from films as f " +
-                "left join mpa as m on f.mpa_id = m.id " +
-                "left join likes as l on f.id = l.film_id " +
-                "left join film_genres as fg on fg.film_id = f.id " +
-                "left join genres as g on g.id = fg.genre_id " +
-                "where f.id in" +
-                "(select id from films left join likes " +
-                "on id = film_id group by id " +
-                "order by count(user_id) desc " +
-                "limit ?)";
-        Map<Long, Film> map = new HashMap<>();
-        jdbcTemplate.getJdbcTemplate().query(sqlQuery, (rs) -> {
-            Film.storeFullRow(rs, map);
-        }, count);
-        return map.values().stream()
-                .sorted(Comparator.comparingInt(f -> ((Film) f).getLikes().size()).reversed())
-                .collect(Collectors.toList());
+        //порядок по счетчику берется из индекса films_like_count_idx
+        Map<String, Long> params = new HashMap<>();
+        params.put("count", count);
+        return getFilms("order by f.like_count desc, f.id asc limit :count", params);
+    }
+
+    //изменяет счетчик лайков фильма
+    private void changeLikeCount(long filmId, int delta) {
+        String sqlQuery = "update films set like_count = like_count + ? where id = ?";
+        jdbcTemplate.getJdbcTemplate().update(sqlQuery, delta, filmId);
+    }
+
+    //выполняет пакет запросов с параметрами (filmId, userId) для каждого userId (пустой пакет не отправляется)
+    private void batchLikes(String sqlQuery, long filmId, long[] userIds) {
+        if (userIds.length == 0) {
+            return;
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(sqlQuery, new BatchPreparedStatementSetter() {
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, filmId);
+                ps.setLong(2, userIds[i]);
+            }
+
+            public int getBatchSize() {
+                return userIds.length;
+            }
+        });
     }
 
     //////////////////////////// Поддержка маппинга //////////////////////////
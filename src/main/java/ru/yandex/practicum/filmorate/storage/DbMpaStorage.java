@@ -5,34 +5,64 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Mpa;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 @Component("mpaDb")
 public class DbMpaStorage implements MpaStorage {
     private final NamedParameterJdbcTemplate jdbcTemplate;
+    //снимок справочника рейтингов: элемент с индексом id - рейтинг с этим id (или null)
+    private volatile Mpa[] ratings = new Mpa[0];
 
     @Autowired
     public DbMpaStorage(NamedParameterJdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    //перечитывает справочник рейтингов из базы
+    @PostConstruct
+    @Override
+    public void refresh() {
+        String sqlQuery = "select * from mpa order by id";
+        List<Mpa> list = jdbcTemplate.getJdbcTemplate().query(sqlQuery, Mpa::mapRowToMpa);
+        int size = list.isEmpty() ? 0 : (int) list.get(list.size() - 1).getId() + 1;
+        Mpa[] snapshot = new Mpa[size];
+        for (Mpa mpa : list) {
+            snapshot[(int) mpa.getId()] = mpa;
+        }
+        ratings = snapshot; //подменяем снимок целиком
+    }
+
     //возвращает рейтинг по идентификатору
     @Override
     public Optional<Mpa> getMpa(long mpaId) {
-        String sqlQuery = "select * from mpa where id = ?";
-        List<Mpa> mpa = jdbcTemplate.getJdbcTemplate().query(sqlQuery, Mpa::mapRowToMpa, mpaId);
-        if (mpa.size() == 0) {
+        Mpa[] snapshot = ratings;
+        if ((mpaId <= 0) || (mpaId >= snapshot.length) || (snapshot[(int) mpaId] == null)) {
             return Optional.empty();
         } else {
-            return Optional.of(mpa.get(0));
+            return Optional.of(copy(snapshot[(int) mpaId]));
         }
     }
 
-    //возвращает все рейтинги из базы
+    //возвращает все рейтинги
     @Override
     public List<Mpa> getAllMpa() {
-        String sqlQuery = "select * from mpa order by id";
-        return jdbcTemplate.getJdbcTemplate().query(sqlQuery, Mpa::mapRowToMpa);
+        List<Mpa> list = new ArrayList<>();
+        for (Mpa mpa : ratings) {
+            if (mpa != null) {
+                list.add(copy(mpa));
+            }
+        }
+        return list;
+    }
+
+    //рейтинги снимка наружу отдаются копиями, чтобы их нельзя было изменить
+    private static Mpa copy(Mpa mpa) {
+        return Mpa.builder()
+                .id(mpa.getId())
+                .name(mpa.getName())
+                .build();
     }
 }
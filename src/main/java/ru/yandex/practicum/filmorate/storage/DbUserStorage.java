@@ -3,31 +3,49 @@ package ru.yandex.practicum.filmorate.storage;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
+import javax.annotation.PostConstruct;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Component("userDb")
 public class DbUserStorage extends DbBaseUserStorage implements UserStorage {
+    //индекс существующих идентификаторов
+    private final IdIndex idIndex = new IdIndex();
 
     public DbUserStorage(NamedParameterJdbcTemplate jdbcTemplate) {
         super(jdbcTemplate);
     }
 
+    //строит индекс идентификаторов по таблице users
+    @PostConstruct
+    @Override
+    public void refresh() {
+        idIndex.rebuild(() -> {
+            LongIdSet set = new LongIdSet();
+            jdbcTemplate.getJdbcTemplate().query("select id from users order by id asc", (rs) -> {
+                set.addId(rs.getLong("id"));
+            });
+            return set.toLongArray();
+        });
+    }
+
     //////////////////////////////////////////////////////////////////////////
     ///////////////////////// Реализация операций CRUD ///////////////////////
     //////////////////////////////////////////////////////////////////////////
 
     ////////////////////////////////// Чтение ////////////////////////////////
 
-    //проверка наличия пользователя
+    //проверка наличия пользователя (по индексу в памяти, без обращения к базе)
     @Override
     public boolean contains(long id) {
-        String sqlQuery = "select id from users where id = ?";
-        List<Long> ids = jdbcTemplate.getJdbcTemplate().query(
-                sqlQuery, (rs, n) -> rs.getLong("id"), id);
-        return ids.size() > 0;
+        return idIndex.contains(id);
     }
 
     //возвращает пользователя по идентификатору
@@ -65,6 +83,55 @@ public class DbUserStorage extends DbBaseUserStorage implements UserStorage {
         return map.values().stream().sorted(Comparator.comparingLong(User::getId)).collect(Collectors.toList());
     }
 
+    //возвращает страницу пользователей: не более limit пользователей с id больше after
+    @Override
+    public List<User> getPage(long after, int limit) {
+        //читаем пользователей страницы с неподтвержденными связями
+        String sqlSubquery = "select id from users where id > :after " +
+                "order by id asc limit :limit"; //запрос пользователей страницы
+        String sqlQuery = "select u.*, f.friend_id from users as u " +
+                "left join friends as f on u.id = f.user_id " +
+                "where u.id in (" + sqlSubquery + ") " +
+                "order by u.id asc";
+        Map<String, Object> params = new HashMap<>();
+        params.put("after", after);
+        params.put("limit", limit);
+        Map<Long, User> map = new LinkedHashMap<>(); //сохраняет порядок из запроса
+        jdbcTemplate.query(sqlQuery, params, (rs) -> {
+            User.mapFullRowToUser(rs, map);
+        });
+        //подтверждения читаем только для пользователей страницы
+        Map<Long, List<Long>> ackMap = getAcknowledgedFriendsForSet(sqlSubquery, params);
+        return getUsersWithAcknowledgedLinks(map, ackMap);
+    }
+
+    //получение пользователей по списку идентификаторов (в порядке списка, отсутствующие пропускаются)
+    @Override
+    public List<User> getByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        //читаем пользователей с неподтвержденными связями
+        String sqlSubquery = "select id from users where id in (:ids)";
+        String sqlQuery = "select u.*, f.friend_id from users as u " +
+                "left join friends as f on u.id = f.user_id " +
+                "where u.id in (:ids) " +
+                "order by u.id asc";
+        Map<String, Object> params = new HashMap<>();
+        params.put("ids", ids);
+        Map<Long, User> map = new HashMap<>();
+        jdbcTemplate.query(sqlQuery, params, (rs) -> {
+            User.mapFullRowToUser(rs, map);
+        });
+        //подтверждения читаем только для найденных пользователей
+        Map<Long, List<Long>> ackMap = getAcknowledgedFriendsForSet(sqlSubquery, params);
+        getUsersWithAcknowledgedLinks(map, ackMap);
+        return ids.stream()
+                .filter(map::containsKey)
+                .map(map::get)
+                .collect(Collectors.toList());
+    }
+
     ////////////////////////////////// Создание //////////////////////////////
 
     //создает в базе нового пользователя
@@ -77,6 +144,47 @@ public class DbUserStorage extends DbBaseUserStorage implements UserStorage {
         long id = simpleJdbcInsert.executeAndReturnKey(user.toMap()).longValue();
         //устанавливаем пользователю правильный идентификатор
         user.setId(id);
+        idIndex.add(id);
+    }
+
+    /*
+        создает пакет пользователей одним пакетным запросом с возвратом ключей
+        (друзья, как и при одиночном создании, записываются отдельно - через хранилище друзей)
+     */
+    @Override
+    @Transactional
+    public void createAll(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        String sqlQuery = "insert into users (login, name, email, birthday) values (?, ?, ?, ?)";
+        List<Long> keys = jdbcTemplate.getJdbcTemplate().execute((Connection connection) -> {
+            try (PreparedStatement ps = connection.prepareStatement(sqlQuery, new String[]{"id"})) {
+                for (User user : users) {
+                    ps.setString(1, user.getLogin());
+                    ps.setString(2, user.getName());
+                    ps.setString(3, user.getEmail());
+                    ps.setObject(4, user.getBirthday());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                List<Long> ids = new ArrayList<>();
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        ids.add(rs.getLong(1));
+                    }
+                }
+                return ids;
+            }
+        });
+        if ((keys == null) || (keys.size() != users.size())) { //драйвер вернул не все ключи
+            throw new IllegalStateException("Не получены идентификаторы созданных пользователей.");
+        }
+        //устанавливаем пользователям правильные идентификаторы
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId(keys.get(i));
+            idIndex.add(keys.get(i));
+        }
     }
 
     ///////////////////////////////// Обновление /////////////////////////////
@@ -98,15 +206,28 @@ public class DbUserStorage extends DbBaseUserStorage implements UserStorage {
 
     //удаляет пользователя по идентификатору
     @Override
+    @Transactional
     public boolean delete(long id) {
-        String sqlQuery = "delete from users where id = ?";
-        return jdbcTemplate.getJdbcTemplate().update(sqlQuery, id) > 0;
+        //лайки пользователя удалятся каскадно, поэтому заранее уменьшаем их счетчики
+        String sqlQuery = "update films set like_count = like_count - 1 " +
+                "where id in (select film_id from likes where user_id = ?)";
+        jdbcTemplate.getJdbcTemplate().update(sqlQuery, id);
+        sqlQuery = "delete from users where id = ?";
+        boolean result = jdbcTemplate.getJdbcTemplate().update(sqlQuery, id) > 0;
+        idIndex.remove(id);
+        return result;
     }
 
     //удаляет всех пользователей
     @Override
+    @Transactional
     public int deleteAll() {
-        String sqlQuery = "delete from users";
-        return jdbcTemplate.getJdbcTemplate().update(sqlQuery);
+        //вместе с пользователями каскадно удаляются все лайки
+        String sqlQuery = "update films set like_count = 0";
+        jdbcTemplate.getJdbcTemplate().update(sqlQuery);
+        sqlQuery = "delete from users";
+        int count = jdbcTemplate.getJdbcTemplate().update(sqlQuery);
+        idIndex.clear();
+        return count;
     }
 }
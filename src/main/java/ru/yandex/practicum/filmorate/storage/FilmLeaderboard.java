@@ -0,0 +1,201 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+
+/*
+    Рейтинг фильмов по числу лайков, поддерживаемый в памяти.
+    Обновляется при каждой записи лайков и перестраивается из базы при старте,
+    поэтому чтение первых N фильмов не требует обращения к базе и занимает O(N).
+    Запись лайков в базу вместе с изменением счетчика выполняется через writing: перестройка,
+    прочитавшая уже записанный лайк, не может случиться до его учета и учесть его второй раз.
+ */
+@Component
+public class FilmLeaderboard {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    //число лайков каждого фильма
+    private final ConcurrentMap<Long, Integer> counts = new ConcurrentHashMap<>();
+    //фильмы, упорядоченные по убыванию числа лайков (при равенстве - по возрастанию id)
+    private final ConcurrentSkipListSet<Rank> ranks = new ConcurrentSkipListSet<>();
+    //изменения счетчиков (вместе с записью в базу) идут параллельно, перестройка - монопольно
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    //обходы рейтинга идут параллельно, перемещение фильма (удаление и вставка) - монопольно
+    //(иначе обход может встретить фильм дважды - до и после перемещения - или не встретить вовсе);
+    //перемещение - две операции в памяти, запись в базу под этой блокировкой не выполняется
+    private final ReadWriteLock rankLock = new ReentrantReadWriteLock();
+
+    @Autowired
+    public FilmLeaderboard(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    ///////////////////////////////// Перестройка ////////////////////////////
+
+    //заново читает число лайков всех фильмов из базы
+    @PostConstruct
+    public void rebuild() {
+        String sqlQuery = "select id, like_count from films";
+        lock.writeLock().lock();
+        try {
+            Map<Long, Integer> likeCounts = new HashMap<>();
+            jdbcTemplate.getJdbcTemplate().query(sqlQuery, (rs) -> {
+                likeCounts.put(rs.getLong("id"), rs.getInt("like_count"));
+            });
+            rankLock.writeLock().lock();
+            try {
+                counts.clear();
+                ranks.clear();
+                likeCounts.forEach((filmId, likes) -> {
+                    counts.put(filmId, likes);
+                    ranks.add(new Rank(filmId, likes));
+                });
+            } finally {
+                rankLock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    ////////////////////////////////// Чтение ////////////////////////////////
+
+    //возвращает идентификаторы первых count фильмов рейтинга
+    public List<Long> getTop(long count) {
+        List<Long> ids = new ArrayList<>();
+        rankLock.readLock().lock();
+        try {
+            Iterator<Rank> iterator = ranks.iterator();
+            while ((ids.size() < count) && iterator.hasNext()) {
+                ids.add(iterator.next().filmId);
+            }
+        } finally {
+            rankLock.readLock().unlock();
+        }
+        return ids;
+    }
+
+    //возвращает число лайков фильма
+    public int getLikeCount(long filmId) {
+        return counts.getOrDefault(filmId, 0);
+    }
+
+    ///////////////////////////////// Обновление /////////////////////////////
+
+    //выполняет запись лайков в базу и следующие за ней изменения счетчиков без перестройки между ними
+    public <T> T writing(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //устанавливает число лайков фильма (добавляет фильм, если его не было)
+    public void put(long filmId, int likes) {
+        change(filmId, (old) -> likes);
+    }
+
+    public void increment(long filmId) {
+        change(filmId, (old) -> old + 1);
+    }
+
+    public void decrement(long filmId) {
+        change(filmId, (old) -> Math.max(old - 1, 0));
+    }
+
+    //изменяет число лайков фильма на delta
+    public void add(long filmId, int delta) {
+        change(filmId, (old) -> Math.max(old + delta, 0));
+    }
+
+    //убирает фильм из рейтинга
+    public void remove(long filmId) {
+        lock.readLock().lock();
+        try {
+            counts.computeIfPresent(filmId, (id, old) -> {
+                rankLock.writeLock().lock();
+                try {
+                    ranks.remove(new Rank(id, old));
+                } finally {
+                    rankLock.writeLock().unlock();
+                }
+                return null;
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //пересчитывает счетчик фильма; позиция в рейтинге меняется под блокировкой его записи в counts
+    private void change(long filmId, IntUnaryOperator operator) {
+        lock.readLock().lock();
+        try {
+            counts.compute(filmId, (id, old) -> {
+                int likes = operator.applyAsInt(old == null ? 0 : old);
+                rankLock.writeLock().lock();
+                try {
+                    if (old != null) {
+                        ranks.remove(new Rank(id, old));
+                    }
+                    ranks.add(new Rank(id, likes));
+                } finally {
+                    rankLock.writeLock().unlock();
+                }
+                return likes;
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //////////////////////////// Позиция в рейтинге /////////////////////////
+
+    private static final class Rank implements Comparable<Rank> {
+        private final long filmId;
+        private final int likes;
+
+        private Rank(long filmId, int likes) {
+            this.filmId = filmId;
+            this.likes = likes;
+        }
+
+        @Override
+        public int compareTo(Rank other) {
+            int result = Integer.compare(other.likes, likes); //по убыванию лайков
+            return (result != 0) ? result : Long.compare(filmId, other.filmId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Rank)) {
+                return false;
+            }
+            Rank rank = (Rank) o;
+            return (filmId == rank.filmId) && (likes == rank.likes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(filmId) + likes;
+        }
+    }
+}
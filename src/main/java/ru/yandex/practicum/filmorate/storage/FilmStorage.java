@@ -1,6 +1,20 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
+
+import java.util.List;
 
 public interface FilmStorage extends Storage<Film> {
+    List<Film> getByIds(List<Long> ids);
+
+    void createAll(List<Film> films);
+
+    //////////////////////////// Краткое представление ///////////////////////
+
+    List<FilmSummary> getAllSummaries();
+
+    List<FilmSummary> getSummaryPage(long after, int limit);
+
+    List<FilmSummary> getSummariesByIds(List<Long> ids);
 }
@@ -9,6 +9,10 @@ public interface FriendStorage {
 
     void addFriendsOfUser(User user);
 
+    boolean[] addFriends(long[] userIds, long[] friendIds);
+
+    void loadFriends(long[] userIds, long[] friendIds);
+
     List<User> getFriends(long id);
 
     List<User> getAcknowledgedFriends(long id);
@@ -16,4 +20,8 @@ public interface FriendStorage {
     List<User> getCommonFriends(long id1, long id2);
 
     boolean deleteFriend(long userId, long friendId);
+
+    void deleteFriendsOfUser(long userId);
+
+    void deleteAllFriends();
 }
@@ -6,6 +6,10 @@ import java.util.List;
 import java.util.Optional;
 
 public interface GenreStorage {
+    void refresh();
+
+    boolean containsGenre(long genreId);
+
     Optional<Genre> getGenre(long genreId);
 
     List<Genre> getAllGenres();
@@ -13,8 +17,4 @@ public interface GenreStorage {
     List<Long> getAllGenreIds();
 
     List<Genre> getFilmGenres(long filmId);
-
-    void setFilmGenres(Long filmId, List<Genre> genres);
-
-    void deleteFilmGenres(long filmId);
 }
@@ -0,0 +1,350 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.exception.IncorrectParameterException;
+import ru.yandex.practicum.filmorate.model.FriendMap;
+import ru.yandex.practicum.filmorate.model.User;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+    Хранилище дружеских связей с графом в памяти (включается filmorate.friends.storage=graph).
+    Запись идет в базу (через DbFriendStorage) и затем в граф (в транзакции - после ее фиксации),
+    чтение - только из графа.
+    Граф хранится построчно: для каждого пользователя отсортированные массивы int
+    исходящих (out - его друзья) и входящих (in - у кого он в друзьях) связей.
+    Общие друзья ищутся пересечением отсортированных массивов, взаимность - по обратным связям;
+    из базы читаются только данные найденных пользователей, одним пакетным запросом.
+ */
+@Component("friendGraph")
+@ConditionalOnProperty(name = "filmorate.friends.storage", havingValue = "graph")
+public class GraphFriendStorage extends DbFriendStorage {
+    private static final int[] EMPTY = new int[0];
+    //максимальная длина списка идентификаторов в одном запросе
+    private static final int CHUNK_SIZE = 1000;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[][] out = new int[0][];
+    private int[][] in = new int[0][];
+
+    public GraphFriendStorage(NamedParameterJdbcTemplate jdbcTemplate) {
+        super(jdbcTemplate);
+    }
+
+    //заново строит граф по таблице friends
+    @PostConstruct
+    public void reload() {
+        String sqlQuery = "select user_id, friend_id from friends order by user_id, friend_id";
+        lock.writeLock().lock();
+        try {
+            out = new int[0][];
+            in = new int[0][];
+            jdbcTemplate.getJdbcTemplate().query(sqlQuery, (rs) -> {
+                link(rs.getInt("user_id"), rs.getInt("friend_id"));
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    ///////////////////////////// Добавление друзей //////////////////////////
+
+    @Override
+    public boolean addFriend(long userId, long friendId) {
+        int user = toIntId(userId);
+        int friend = toIntId(friendId);
+        return write(() -> super.addFriend(userId, friendId), (added) -> link(user, friend));
+    }
+
+    @Override
+    public void addFriendsOfUser(User user) {
+        int userId = toIntId(user.getId());
+        FriendMap friends = user.getFriends();
+        if (friends != null) {
+            for (int i = 0; i < friends.size(); i++) {
+                toIntId(friends.getFriendId(i));
+            }
+        }
+        write(() -> {
+            super.addFriendsOfUser(user);
+            return null;
+        }, (result) -> {
+            FriendMap links = user.getFriends();
+            for (int i = 0; i < links.size(); i++) {
+                int friendId = (int) links.getFriendId(i);
+                link(userId, friendId);
+                if (links.isAcknowledgedAt(i)) {
+                    link(friendId, userId);
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean[] addFriends(long[] userIds, long[] friendIds) {
+        int[] users = toIntIds(userIds);
+        int[] friends = toIntIds(friendIds);
+        return write(() -> super.addFriends(userIds, friendIds), (added) -> {
+            for (int i = 0; i < users.length; i++) {
+                if (added[i]) {
+                    link(users[i], friends[i]);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void loadFriends(long[] userIds, long[] friendIds) {
+        int[] users = toIntIds(userIds);
+        int[] friends = toIntIds(friendIds);
+        write(() -> {
+            super.loadFriends(userIds, friendIds);
+            return null;
+        }, (result) -> {
+            for (int i = 0; i < users.length; i++) {
+                link(users[i], friends[i]);
+            }
+        });
+    }
+
+    ///////////////////////////// Получение друзей ///////////////////////////
+
+    //получение всех подписчиков
+    @Override
+    public List<User> getFriends(long id) {
+        return getUsers(friendsOf(id));
+    }
+
+    //получение подтвержденных друзей (взаимных подписчиков)
+    @Override
+    public List<User> getAcknowledgedFriends(long id) {
+        return getUsers(intersect(friendsOf(id), subscribersOf(id)));
+    }
+
+    //получение общих подписчиков (неподтвержденных друзей)
+    @Override
+    public List<User> getCommonFriends(long id1, long id2) {
+        return getUsers(intersect(friendsOf(id1), friendsOf(id2)));
+    }
+
+    ////////////////////////////// Удаление друзей ///////////////////////////
+
+    @Override
+    public boolean deleteFriend(long userId, long friendId) {
+        return write(() -> super.deleteFriend(userId, friendId), (deleted) -> unlink(userId, friendId));
+    }
+
+    @Override
+    public void deleteFriendsOfUser(long userId) {
+        write(() -> {
+            super.deleteFriendsOfUser(userId);
+            return null;
+        }, (result) -> {
+            for (int friendId : row(out, userId)) {
+                unlink(userId, friendId);
+            }
+            for (int subscriberId : row(in, userId)) {
+                unlink(subscriberId, userId);
+            }
+        });
+    }
+
+    @Override
+    public void deleteAllFriends() {
+        write(() -> {
+            super.deleteAllFriends();
+            return null;
+        }, (result) -> {
+            out = new int[0][];
+            in = new int[0][];
+        });
+    }
+
+    //////////////////////////// Чтение пользователей ////////////////////////
+
+    /*
+        читает пользователей с заданными id (по возрастанию) одним запросом на порцию id
+        и заполняет их друзей по графу
+     */
+    private List<User> getUsers(int[] ids) {
+        List<User> users = new ArrayList<>();
+        for (int from = 0; from < ids.length; from += CHUNK_SIZE) {
+            List<Long> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(from + CHUNK_SIZE, ids.length); i++) {
+                chunk.add((long) ids[i]);
+            }
+            Map<String, Object> params = new HashMap<>();
+            params.put("ids", chunk);
+            users.addAll(jdbcTemplate.query("select * from users where id in (:ids) order by id asc",
+                    params, User::mapRowToUser));
+        }
+        lock.readLock().lock();
+        try {
+            for (User user : users) {
+                int[] friends = row(out, user.getId());
+                int[] subscribers = row(in, user.getId());
+                FriendMap map = user.getFriends();
+                for (int friendId : friends) { //связь взаимна, если друг подписан на пользователя
+                    map.putFriend(friendId, Arrays.binarySearch(subscribers, friendId) >= 0);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return users;
+    }
+
+    ///////////////////////////// Работа с графом ////////////////////////////
+
+    //друзья пользователя (строки графа не меняются после публикации, поэтому их можно отдавать наружу)
+    private int[] friendsOf(long id) {
+        lock.readLock().lock();
+        try {
+            return row(out, id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //подписчики пользователя
+    private int[] subscribersOf(long id) {
+        lock.readLock().lock();
+        try {
+            return row(in, id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //у id вне диапазона строк графа (в том числе больших Integer.MAX_VALUE) связей нет
+    private static int[] row(int[][] rows, long id) {
+        return ((id >= 0) && (id < rows.length) && (rows[(int) id] != null)) ? rows[(int) id] : EMPTY;
+    }
+
+    //добавляет ребро userId -> friendId (вызывается под блокировкой записи)
+    private boolean link(int userId, int friendId) {
+        ensureCapacity(Math.max(userId, friendId));
+        int[] friends = (out[userId] == null) ? EMPTY : out[userId];
+        if (Arrays.binarySearch(friends, friendId) >= 0) {
+            return false;
+        }
+        out[userId] = insert(friends, friendId);
+        in[friendId] = insert((in[friendId] == null) ? EMPTY : in[friendId], userId);
+        return true;
+    }
+
+    //убирает ребро userId -> friendId (вызывается под блокировкой записи)
+    private boolean unlink(long userId, long friendId) {
+        if ((friendId < 0) || (friendId > Integer.MAX_VALUE)) {
+            return false;
+        }
+        int index = Arrays.binarySearch(row(out, userId), (int) friendId);
+        if (index < 0) {
+            return false;
+        }
+        int user = (int) userId;
+        int friend = (int) friendId;
+        out[user] = delete(out[user], index);
+        in[friend] = delete(in[friend], Arrays.binarySearch(in[friend], user));
+        return true;
+    }
+
+    /*
+        запись в базу и соответствующее изменение графа
+        запись в базу идет без блокировки графа, чтобы чтение не ждало обращения к базе;
+        граф меняется под блокировкой записи сразу после нее, а внутри транзакции - после фиксации
+        (при откате остается прежним)
+     */
+    private <T> T write(Supplier<T> dbWrite, Consumer<T> graphChange) {
+        T result = dbWrite.get();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changeGraph(graphChange, result);
+                }
+            });
+        } else {
+            changeGraph(graphChange, result);
+        }
+        return result;
+    }
+
+    private <T> void changeGraph(Consumer<T> graphChange, T result) {
+        lock.writeLock().lock();
+        try {
+            graphChange.accept(result);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //граф индексируется id типа int: связи пользователей с большими id не принимаются (до записи в базу)
+    private static int toIntId(long id) {
+        if ((id < 0) || (id > Integer.MAX_VALUE)) {
+            throw new IncorrectParameterException("Идентификатор %d вне допустимого диапазона.", id);
+        }
+        return (int) id;
+    }
+
+    private static int[] toIntIds(long[] ids) {
+        int[] result = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = toIntId(ids[i]);
+        }
+        return result;
+    }
+
+    private void ensureCapacity(int maxId) {
+        if (maxId >= out.length) {
+            int length = Math.max(maxId + 1, out.length + (out.length >> 1));
+            out = Arrays.copyOf(out, length);
+            in = Arrays.copyOf(in, length);
+        }
+    }
+
+    //строки графа не изменяются на месте: при записи создается новый массив
+    private static int[] insert(int[] row, int value) {
+        int index = -Arrays.binarySearch(row, value) - 1;
+        int[] result = new int[row.length + 1];
+        System.arraycopy(row, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(row, index, result, index + 1, row.length - index);
+        return result;
+    }
+
+    private static int[] delete(int[] row, int index) {
+        int[] result = new int[row.length - 1];
+        System.arraycopy(row, 0, result, 0, index);
+        System.arraycopy(row, index + 1, result, index, row.length - index - 1);
+        return result;
+    }
+
+    //пересечение отсортированных массивов
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while ((i < a.length) && (j < b.length)) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
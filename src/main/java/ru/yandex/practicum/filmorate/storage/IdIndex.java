@@ -0,0 +1,173 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/*
+    Точный индекс существующих идентификаторов: битовая карта над плотными id из identity-столбца.
+    Проверка наличия - чтение одного слова без блокировок; бит i хранит признак наличия id = i.
+    Изменения внутри транзакции отменяются при ее откате, поэтому отсутствие объекта
+    определяется точно, а ложное наличие возможно лишь на время незафиксированной вставки.
+    Изменения, сделанные во время перестройки (пока читается база), записываются в журнал
+    и повторяются на новой карте перед ее публикацией.
+ */
+public class IdIndex {
+    //изменения битов идут параллельно (атомарно), расширение и замена карты - монопольно
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile AtomicLongArray words = new AtomicLongArray(16);
+    //изменения незавершенных транзакций: база при перестройке их еще не видит
+    private final ConcurrentMap<Long, Boolean> uncommitted = new ConcurrentHashMap<>();
+    //журнал изменений во время перестройки (id - добавление, -id - удаление), вне перестройки - null
+    private Queue<Long> journal;
+
+    ////////////////////////////////// Чтение ////////////////////////////////
+
+    public boolean contains(long id) {
+        AtomicLongArray current = words;
+        long word = id >>> 6;
+        return (id > 0) && (word < current.length()) && ((current.get((int) word) & (1L << id)) != 0);
+    }
+
+    ///////////////////////////////// Изменение //////////////////////////////
+
+    //отмечает id как существующий (при откате текущей транзакции отметка снимается)
+    public void add(long id) {
+        if (id > 0) {
+            set(id, true);
+            onCompletion(id, true);
+        }
+    }
+
+    //снимает отметку с id (при откате текущей транзакции она восстанавливается)
+    public void remove(long id) {
+        if (contains(id)) {
+            set(id, false);
+            onCompletion(id, false);
+        }
+    }
+
+    public void clear() {
+        rebuild(() -> new long[0]);
+    }
+
+    /*
+        заменяет содержимое индекса набором ids, прочитанным из базы
+        изменения, сделанные параллельно с чтением, и изменения незавершенных транзакций
+        повторяются на новой карте, поэтому не теряются
+     */
+    public synchronized void rebuild(Supplier<long[]> source) {
+        Queue<Long> changes = new ConcurrentLinkedQueue<>();
+        lock.writeLock().lock();
+        try {
+            uncommitted.forEach((id, value) -> changes.add(value ? id : -id));
+            journal = changes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            long[] ids = source.get();
+            long max = 0;
+            for (long id : ids) {
+                max = Math.max(max, id);
+            }
+            AtomicLongArray rebuilt = new AtomicLongArray(Math.max(16, (int) (max >>> 6) + 1));
+            for (long id : ids) {
+                rebuilt.getAndAccumulate((int) (id >>> 6), 1L << id, (a, b) -> a | b);
+            }
+            lock.writeLock().lock();
+            try {
+                for (long change : changes) {
+                    long id = Math.abs(change);
+                    rebuilt = grown(rebuilt, (int) (id >>> 6));
+                    update(rebuilt, id, change > 0);
+                }
+                words = rebuilt;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            journal = null;
+            lock.writeLock().unlock();
+        }
+    }
+
+    ////////////////////////////// Работа с битами ///////////////////////////
+
+    private void set(long id, boolean value) {
+        int word = (int) (id >>> 6);
+        while (true) {
+            lock.readLock().lock();
+            try {
+                //границу проверяем под блокировкой: карту могли заменить меньшей (clear)
+                AtomicLongArray current = words;
+                if (word < current.length()) {
+                    update(current, id, value);
+                    if (journal != null) {
+                        journal.add(value ? id : -id);
+                    }
+                    return;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            grow(word);
+        }
+    }
+
+    private static void update(AtomicLongArray words, long id, boolean value) {
+        long mask = 1L << id;
+        if (value) {
+            words.getAndAccumulate((int) (id >>> 6), mask, (a, b) -> a | b);
+        } else {
+            words.getAndAccumulate((int) (id >>> 6), mask, (a, b) -> a & ~b);
+        }
+    }
+
+    private void grow(int word) {
+        lock.writeLock().lock();
+        try {
+            words = grown(words, word); //если уже расширили в другом потоке, карта не меняется
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //карта, вмещающая слово word (сама карта, если она достаточна, иначе расширенная копия)
+    private static AtomicLongArray grown(AtomicLongArray current, int word) {
+        if (word < current.length()) {
+            return current;
+        }
+        AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, 2 * current.length()));
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        return grown;
+    }
+
+    //запоминает изменение до завершения транзакции и отменяет его при откате
+    private void onCompletion(long id, boolean value) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        uncommitted.put(id, value);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                uncommitted.remove(id, value);
+                if (status == STATUS_ROLLED_BACK) {
+                    set(id, !value);
+                }
+            }
+        });
+    }
+}
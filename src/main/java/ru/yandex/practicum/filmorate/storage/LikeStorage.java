@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
@@ -12,15 +13,23 @@ public interface LikeStorage {
 
     List<User> getLikes(long filmId);
 
+    List<User> getLikesPage(long filmId, long after, int limit);
+
     Set<Long> getLikeIds(long filmId);
 
-    boolean addLike(long filmId, long userId);
+    Set<Long> getLikedFilmIds(long userId);
+
+    boolean containsLike(long filmId, long userId);
 
-    void storeAllLikes(Long filmId, Set<Long> likes);
+    boolean addLike(long filmId, long userId);
 
     boolean deleteLike(long filmId, long userId);
 
-    void deleteAllLikes(long filmId);
+    int applyLikes(long filmId, LongIdSet added, LongIdSet removed);
+
+    boolean[] addLikes(long[] filmIds, long[] userIds);
+
+    int recountLikes();
 
     List<Film> getTopFilms(Long count);
 }
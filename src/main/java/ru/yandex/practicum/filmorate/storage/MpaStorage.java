@@ -6,6 +6,8 @@ import java.util.List;
 import java.util.Optional;
 
 public interface MpaStorage {
+    void refresh();
+
     Optional<Mpa> getMpa(long filmId);
 
     List<Mpa> getAllMpa();
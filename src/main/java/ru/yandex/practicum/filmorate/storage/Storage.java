@@ -2,14 +2,33 @@ package ru.yandex.practicum.filmorate.storage;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface Storage<T extends Storable> {
+    //перечитывает из базы данные, хранимые в памяти (индекс идентификаторов)
+    void refresh();
+
     boolean contains(long id);
 
     Optional<T> get(long id);
 
     List<T> getAll();
 
+    List<T> getPage(long after, int limit);
+
+    //передает потребителю все объекты по возрастанию id, читая их из базы порциями по chunkSize
+    default void forEach(int chunkSize, Consumer<T> consumer) {
+        long after = 0;
+        List<T> chunk;
+        do {
+            chunk = getPage(after, chunkSize);
+            chunk.forEach(consumer);
+            if (!chunk.isEmpty()) {
+                after = chunk.get(chunk.size() - 1).getId();
+            }
+        } while (chunk.size() == chunkSize);
+    }
+
     void create(T object);
 
     boolean update(T object);
@@ -2,5 +2,10 @@ package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.List;
+
 public interface UserStorage extends Storage<User> {
+    List<User> getByIds(List<Long> ids);
+
+    void createAll(List<User> users);
 }
@@ -10,9 +10,13 @@ CREATE TABLE IF NOT EXISTS friends(
     user_id INTEGER,
     friend_id INTEGER,
     PRIMARY KEY (user_id, friend_id),
-    FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE ON UPDATE CASCADE,
-    FOREIGN KEY (friend_id) REFERENCES users (id) ON DELETE CASCADE ON UPDATE CASCADE
+    FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE ON UPDATE CASCADE
 );
+-- Обратный поиск (кто добавил пользователя в друзья). Внешний ключ объявляется после индекса,
+-- чтобы H2 использовал этот индекс, а не заводил для ключа свой.
+CREATE INDEX IF NOT EXISTS friends_friend_id_idx ON friends (friend_id);
+ALTER TABLE friends ADD CONSTRAINT IF NOT EXISTS friends_friend_id_fk
+    FOREIGN KEY (friend_id) REFERENCES users (id) ON DELETE CASCADE ON UPDATE CASCADE;
 CREATE TABLE IF NOT EXISTS films(
     id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     name varchar(40) NOT NULL,
@@ -20,15 +24,20 @@ CREATE TABLE IF NOT EXISTS films(
     release_date date NOT NULL,
     duration INTEGER,
     mpa_id INTEGER,
+    like_count INTEGER DEFAULT 0 NOT NULL,
     CONSTRAINT films_pk PRIMARY KEY (id)
 );
+CREATE INDEX IF NOT EXISTS films_like_count_idx ON films (like_count DESC, id);
 CREATE TABLE IF NOT EXISTS likes(
     film_id INTEGER,
     user_id INTEGER,
     PRIMARY KEY (film_id, user_id),
-    FOREIGN KEY (film_id) REFERENCES films (id) ON DELETE CASCADE ON UPDATE CASCADE,
-    FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE ON UPDATE CASCADE
+    FOREIGN KEY (film_id) REFERENCES films (id) ON DELETE CASCADE ON UPDATE CASCADE
 );
+-- Лайки пользователя (удаление пользователя, пакетная проверка лайков).
+CREATE INDEX IF NOT EXISTS likes_user_id_idx ON likes (user_id);
+ALTER TABLE likes ADD CONSTRAINT IF NOT EXISTS likes_user_id_fk
+    FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE ON UPDATE CASCADE;
 CREATE TABLE IF NOT EXISTS genres(
     id INTEGER,
     name varchar(40),
@@ -38,9 +47,12 @@ CREATE TABLE IF NOT EXISTS film_genres(
     film_id INTEGER,
     genre_id INTEGER,
     PRIMARY KEY (film_id, genre_id),
-    FOREIGN KEY (film_id) REFERENCES films (id) ON DELETE CASCADE ON UPDATE CASCADE,
-    FOREIGN KEY (genre_id) REFERENCES genres (id) ON DELETE CASCADE ON UPDATE CASCADE
+    FOREIGN KEY (film_id) REFERENCES films (id) ON DELETE CASCADE ON UPDATE CASCADE
 );
+-- Фильмы жанра (каскадное удаление жанра).
+CREATE INDEX IF NOT EXISTS film_genres_genre_id_idx ON film_genres (genre_id);
+ALTER TABLE film_genres ADD CONSTRAINT IF NOT EXISTS film_genres_genre_id_fk
+    FOREIGN KEY (genre_id) REFERENCES genres (id) ON DELETE CASCADE ON UPDATE CASCADE;
 CREATE TABLE IF NOT EXISTS mpa(
     id INTEGER,
     name varchar(40),
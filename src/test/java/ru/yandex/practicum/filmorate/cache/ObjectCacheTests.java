@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ObjectCacheTests {
+
+    @Test
+    public void readThroughTest() {
+        AtomicInteger loads = new AtomicInteger();
+        ObjectCache<StringBuilder> cache = newCache(10, 100);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(cache.get(1, (key) -> {
+                loads.incrementAndGet();
+                return Optional.of(new StringBuilder("value"));
+            }).orElseThrow().toString(), "value");
+        }
+        assertEquals(loads.get(), 1);
+        assertEquals(cache.getStats().getHits(), 2);
+        assertEquals(cache.getStats().getMisses(), 1);
+        //отсутствующий объект не кэшируется
+        assertTrue(cache.get(2, (key) -> Optional.empty()).isEmpty());
+        assertEquals(cache.getStats().getSize(), 1);
+    }
+
+    @Test
+    public void cachedObjectIsNotSharedTest() {
+        ObjectCache<StringBuilder> cache = newCache(10, 100);
+        cache.get(1, (key) -> Optional.of(new StringBuilder("a"))).orElseThrow().append("b");
+        StringBuilder value = cache.get(1, (key) -> Optional.empty()).orElseThrow();
+        assertEquals(value.toString(), "a");
+        value.append("c");
+        assertEquals(cache.get(1, (key) -> Optional.empty()).orElseThrow().toString(), "a");
+    }
+
+    @Test
+    public void sizeEvictionTest() {
+        ObjectCache<StringBuilder> cache = newCache(3, 100);
+        for (long key = 1; key <= 3; key++) {
+            cache.get(key, (id) -> Optional.of(new StringBuilder("x")));
+        }
+        //к объекту 1 обращались - он получает второй шанс, вытесняется объект 2
+        cache.get(1, (id) -> Optional.empty());
+        cache.get(4, (id) -> Optional.of(new StringBuilder("x")));
+        assertEquals(cache.getStats().getSize(), 3);
+        assertEquals(cache.getStats().getEvictions(), 1);
+        assertTrue(cache.get(1, (id) -> Optional.empty()).isPresent());
+        assertTrue(cache.get(2, (id) -> Optional.empty()).isEmpty());
+    }
+
+    @Test
+    public void weightEvictionTest() {
+        ObjectCache<StringBuilder> cache = newCache(100, 10);
+        cache.get(1, (id) -> Optional.of(new StringBuilder("123456")));
+        cache.get(2, (id) -> Optional.of(new StringBuilder("123456")));
+        assertEquals(cache.getStats().getSize(), 1);
+        assertTrue(cache.getStats().getWeight() <= 10);
+        assertEquals(cache.getStats().getEvictions(), 1);
+    }
+
+    @Test
+    public void evictionSkipsStaleEntriesTest() {
+        ObjectCache<StringBuilder> cache = newCache(3, 100);
+        for (long key = 1; key <= 3; key++) {
+            cache.get(key, (id) -> Optional.of(new StringBuilder("x")));
+        }
+        cache.invalidate(1);
+        assertEquals(cache.getStaleCount(), 1);
+        //вытеснение пропускает удаленный объект 1 и вытесняет объект 2
+        cache.get(4, (id) -> Optional.of(new StringBuilder("x")));
+        cache.get(5, (id) -> Optional.of(new StringBuilder("x")));
+        assertEquals(cache.getStats().getEvictions(), 1);
+        assertEquals(cache.getStaleCount(), 0);
+        assertEquals(cache.getStats().getSize(), 3);
+    }
+
+    @Test
+    public void invalidateDuringLoadTest() {
+        ObjectCache<StringBuilder> cache = newCache(10, 100);
+        //объект изменился, пока его читали: прочитанная версия не должна попасть в кэш
+        StringBuilder value = cache.get(1, (key) -> {
+            cache.invalidate(key);
+            return Optional.of(new StringBuilder("old"));
+        }).orElseThrow();
+        assertEquals(value.toString(), "old");
+        assertEquals(cache.get(1, (key) -> Optional.of(new StringBuilder("new"))).orElseThrow().toString(), "new");
+        assertEquals(cache.getStats().getMisses(), 2);
+    }
+
+    @Test
+    public void getAllTest() {
+        ObjectCache<StringBuilder> cache = newCache(10, 100);
+        cache.get(1, (key) -> Optional.of(new StringBuilder("one")));
+        List<List<Long>> loads = new ArrayList<>();
+        Map<Long, StringBuilder> values = cache.getAll(List.of(3L, 1L, 2L, 3L), (keys) -> {
+            loads.add(keys);
+            cache.invalidate(2); //второй объект изменился во время чтения
+            Map<Long, StringBuilder> loaded = new HashMap<>();
+            loaded.put(2L, new StringBuilder("two"));
+            return loaded; //третьего объекта нет
+        });
+        //промахи загружаются одним вызовом, повторы отбрасываются
+        assertEquals(loads, List.of(List.of(3L, 2L)));
+        assertEquals(values.keySet(), Set.of(1L, 2L));
+        assertEquals(values.get(1L).toString(), "one");
+        assertEquals(values.get(2L).toString(), "two");
+        //измененный во время чтения объект и отсутствующий не кэшируются
+        assertEquals(cache.getStats().getSize(), 1);
+        assertEquals(cache.getStats().getHits(), 1);
+        assertEquals(cache.getStats().getMisses(), 3);
+        cache.getAll(List.of(4L), (keys) -> Map.of(4L, new StringBuilder("four")));
+        assertEquals(cache.get(4, (key) -> Optional.empty()).orElseThrow().toString(), "four");
+    }
+
+    @Test
+    public void clearTest() {
+        ObjectCache<StringBuilder> cache = newCache(10, 100);
+        for (long key = 1; key <= 5; key++) {
+            cache.get(key, (id) -> Optional.of(new StringBuilder("x")));
+        }
+        cache.clear();
+        assertEquals(cache.getStats().getSize(), 0);
+        assertEquals(cache.getStats().getWeight(), 0);
+    }
+
+    //кэш строк, вес строки - ее длина
+    private static ObjectCache<StringBuilder> newCache(int maxSize, long maxWeight) {
+        return new ObjectCache<>(maxSize, maxWeight, StringBuilder::length, StringBuilder::new);
+    }
+}
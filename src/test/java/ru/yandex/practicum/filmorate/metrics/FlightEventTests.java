@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.util.TestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//события JFR от реальных вызовов сервисов и хранилищ в профиле jfr
+@SpringBootTest
+@AutoConfigureTestDatabase
+@ActiveProfiles("jfr")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FlightEventTests {
+    private static final int COUNT = 3;
+    private final ApplicationContext context;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void resetDatabase() {
+        jdbcTemplate.update(TestUtils.getSqlForResetUsers(COUNT));
+        jdbcTemplate.update(TestUtils.getSqlForResetFilms(COUNT));
+        userService.reload();
+        filmService.reload();
+    }
+
+    @Test
+    public void profileRegistersAdvisorTest() {
+        assertEquals(context.getBeansOfType(FlightEventAdvisor.class).size(), 1);
+    }
+
+    @Test
+    public void serviceCallsEmitEventsTest() throws IOException {
+        Path file = Files.createTempFile("filmorate", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(StorageCallEvent.NAME);
+            recording.enable(ServiceCallEvent.NAME);
+            recording.start();
+            userService.addFriend(1, 2);
+            userService.getFriends(1);
+            filmStorage.forEach(2, (film) -> { });
+            userStorage.forEach(2, (user) -> { });
+            recording.stop();
+            recording.dump(file);
+            //события по операциям (для повторяющихся операций - последнее)
+            Map<String, RecordedEvent> events = new HashMap<>();
+            List<RecordedEvent> recorded = RecordingFile.readAllEvents(file);
+            for (RecordedEvent event : recorded) {
+                events.put(event.getString("operation"), event);
+            }
+            RecordedEvent service = events.get("UserService.getFriends");
+            assertEquals(service.getEventType().getName(), ServiceCallEvent.NAME);
+            assertEquals(service.getString("ids"), "1");
+            assertEquals(service.getLong("rows"), 1);
+            RecordedEvent storage = events.get("DbFriendStorage.getFriends");
+            assertEquals(storage.getEventType().getName(), StorageCallEvent.NAME);
+            assertEquals(storage.getString("ids"), "1");
+            assertEquals(events.get("UserService.addFriend").getString("ids"), "1,2");
+            //унаследованный метод интерфейса относится к своему хранилищу
+            assertTrue(events.containsKey("DbFilmStorage.forEach"));
+            assertTrue(events.containsKey("DbUserStorage.forEach"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
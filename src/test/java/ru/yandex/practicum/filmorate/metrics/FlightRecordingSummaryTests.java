@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.util.TestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightRecordingSummaryTests {
+
+    @Test
+    public void summarizeRecordingTest() throws IOException {
+        Path file = Files.createTempFile("filmorate", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(StorageCallEvent.NAME);
+            recording.enable(ServiceCallEvent.NAME);
+            recording.start();
+            for (int i = 0; i < 3; i++) {
+                commit(new StorageCallEvent(), "DbFilmStorage.getByIds", 2);
+            }
+            commit(new ServiceCallEvent(), "FilmService.getTopFilms", 5);
+            recording.stop();
+            recording.dump(file);
+            Map<String, LatencyHistogram.Snapshot> summary = FlightRecordingSummary.summarize(file);
+            assertEquals(summary.size(), 2);
+            assertEquals(summary.get("DbFilmStorage.getByIds").getCount(), 3);
+            assertEquals(summary.get("DbFilmStorage.getByIds").getRows(), 6);
+            assertEquals(summary.get("FilmService.getTopFilms").getRows(), 5);
+            String table = FlightRecordingSummary.format(summary);
+            assertEquals(table.split("\n").length, 3); //заголовок и две операции
+            assertTrue(table.contains("FilmService.getTopFilms"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void formatIdsTest() {
+        assertEquals(FlightEventAdvisor.formatIds(new Object[]{1L, 2}), "1,2");
+        assertEquals(FlightEventAdvisor.formatIds(new Object[]{TestUtils.generateUser(7), "name"}), "7");
+        assertEquals(FlightEventAdvisor.formatIds(new Object[]{List.of(1L, 2L), new long[]{3, 4}}), "1,2,3,4");
+        //длинные списки обрезаются, остаток указывается числом
+        long[] ids = new long[25];
+        assertEquals(FlightEventAdvisor.formatIds(new Object[]{ids}), "0,0,0,0,0,0,0,0,0,0 (+15)");
+    }
+
+    private static void commit(OperationEvent event, String operation, long rows) {
+        event.begin();
+        event.operation = operation;
+        event.rows = rows;
+        event.end();
+        event.commit();
+    }
+}
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTests {
+
+    @Test
+    public void bucketBoundsTest() {
+        Random random = new Random(17);
+        for (int i = 0; i < 100_000; i++) {
+            long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+            int index = LatencyHistogram.getIndex(value);
+            //значение лежит в своем интервале, ширина интервала - не больше 1/8 значения
+            assertTrue(LatencyHistogram.getLowerBound(index) <= value);
+            long next = LatencyHistogram.getLowerBound(index + 1);
+            assertTrue((next > value) || (next < 0)); //у последнего интервала граница переполняется
+            assertTrue(next - LatencyHistogram.getLowerBound(index) <= Math.max(1, value / 8));
+        }
+        for (long value = 0; value < 100_000; value++) { //интервалы идут подряд, без пропусков
+            int step = LatencyHistogram.getIndex(value + 1) - LatencyHistogram.getIndex(value);
+            assertTrue((step == 0) || (step == 1));
+        }
+        assertEquals(5, LatencyHistogram.getIndex(5)); //малые значения учитываются точно
+    }
+
+    @Test
+    public void percentilesTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L, 2); //от 1 до 1000 мкс
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(2000, snapshot.getRows());
+        assertEquals(500, snapshot.getMean());
+        assertEquals(500_500_000, snapshot.getTotalNanos()); //средняя округлена, сумма - нет
+        assertEquals(1000, snapshot.getMax());
+        assertWithin(500, snapshot.getP50());
+        assertWithin(900, snapshot.getP90());
+        assertWithin(990, snapshot.getP99());
+    }
+
+    @Test
+    public void resetTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5_000_000, 1);
+        histogram.reset();
+        histogram.record(2_000, 0);
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getRows());
+        assertEquals(2, snapshot.getMax());
+        assertEquals(2, snapshot.getP99());
+    }
+
+    @Test
+    public void statisticsTest() {
+        LatencyStatistics statistics = new LatencyStatistics();
+        LatencyHistogram histogram = statistics.get("DbFilmStorage.get");
+        statistics.record("DbFilmStorage.get", 1_000, 1);
+        statistics.get("DbUserStorage.get"); //без вызовов в снимок не попадает
+        assertEquals(1, statistics.getAll().size());
+        statistics.reset();
+        assertTrue(statistics.getAll().isEmpty());
+        histogram.record(1_000, 1); //сброс не отрывает сохраненные ссылки
+        assertEquals(1, statistics.getAll().get("DbFilmStorage.get").getCount());
+    }
+
+    //квантиль берется по верхней границе интервала: не меньше точного и не больше его на 1/8
+    private static void assertWithin(long expected, long actual) {
+        assertTrue((actual >= expected) && (actual <= expected + expected / 8), expected + " ~ " + actual);
+    }
+}
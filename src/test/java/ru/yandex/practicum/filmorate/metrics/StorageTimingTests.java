@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.util.TestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//гистограммы длительности методов хранилищ
+@SpringBootTest
+@AutoConfigureTestDatabase
+public class StorageTimingTests {
+    private static final int COUNT = 3;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final LatencyStatistics statistics;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public StorageTimingTests(FilmStorage filmStorage, UserStorage userStorage, FilmService filmService,
+                              UserService userService, @Qualifier("storageLatency") LatencyStatistics statistics,
+                              JdbcTemplate jdbcTemplate) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.filmService = filmService;
+        this.userService = userService;
+        this.statistics = statistics;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @BeforeEach
+    public void resetDatabase() {
+        jdbcTemplate.update(TestUtils.getSqlForResetUsers(COUNT));
+        jdbcTemplate.update(TestUtils.getSqlForResetFilms(COUNT));
+        userService.reload();
+        filmService.reload();
+        statistics.reset();
+    }
+
+    @Test
+    public void inheritedMethodPerStorageTest() {
+        //forEach - один метод интерфейса Storage, но замеры идут отдельно по хранилищам
+        filmStorage.forEach(2, (film) -> { });
+        userStorage.forEach(2, (user) -> { });
+        userStorage.forEach(2, (user) -> { });
+        Map<String, LatencyHistogram.Snapshot> snapshots = statistics.getAll();
+        assertEquals(snapshots.get("DbFilmStorage.forEach").getCount(), 1);
+        assertEquals(snapshots.get("DbFilmStorage.forEach").getRows(), 0);
+        assertEquals(snapshots.get("DbUserStorage.forEach").getCount(), 2);
+        //страницы читаются вызовом внутри хранилища и не замеряются
+        assertNull(snapshots.get("DbFilmStorage.getPage"));
+    }
+
+    @Test
+    public void genericMethodsTest() {
+        //сервисы вызывают create и update через обобщенный интерфейс Storage (мостовые методы)
+        Film film = filmService.create(TestUtils.generateFilm(COUNT + 1));
+        filmService.update(film);
+        userService.create(TestUtils.generateUser(COUNT + 1));
+        Map<String, LatencyHistogram.Snapshot> snapshots = statistics.getAll();
+        assertEquals(snapshots.get("DbFilmStorage.create").getCount(), 1);
+        assertEquals(snapshots.get("DbFilmStorage.update").getCount(), 1);
+        assertEquals(snapshots.get("DbUserStorage.create").getCount(), 1);
+        assertTrue(userStorage.get(1).isPresent());
+        assertEquals(statistics.getAll().get("DbUserStorage.get").getRows(), 1);
+    }
+}
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.model;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.IncorrectParameterException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FriendMapTests {
+
+    @Test
+    public void orderAndAckTest() {
+        FriendMap map = new FriendMap();
+        map.putFriend(5, false);
+        map.putFriend(1, true);
+        map.putFriend(3, false);
+        assertEquals(map.size(), 3);
+        assertEquals(map.getFriendId(0), 1);
+        assertEquals(map.getFriendId(1), 3);
+        assertEquals(map.getFriendId(2), 5);
+        assertTrue(map.isAcknowledgedAt(0));
+        assertFalse(map.isAcknowledgedAt(1));
+        //повторное добавление меняет только признак подтверждения
+        map.putFriend(3, true);
+        assertEquals(map.size(), 3);
+        assertTrue(map.isAcknowledged(3));
+        assertEquals(map.put(3L, false), Boolean.TRUE);
+        assertFalse(map.isAcknowledged(3));
+        assertNull(map.put(7L, null)); //отсутствующий признак - неподтвержденная связь
+        assertEquals(map.get(7L), Boolean.FALSE);
+        assertNull(map.get(4L));
+        assertNull(map.get("3"));
+        assertThrows(IndexOutOfBoundsException.class, () -> map.getFriendId(4));
+    }
+
+    @Test
+    public void removeTest() {
+        FriendMap map = new FriendMap(Map.of(1L, true, 2L, false, 3L, true, 4L, false));
+        assertTrue(map.removeFriend(2));
+        assertFalse(map.removeFriend(2));
+        assertEquals(map.remove(3L), Boolean.TRUE);
+        assertNull(map.remove(3L));
+        assertEquals(new ArrayList<>(map.keySet()), List.of(1L, 4L));
+        //удаление через итератор - неподтвержденных связей
+        Iterator<Map.Entry<Long, Boolean>> iterator = map.entrySet().iterator();
+        assertThrows(IllegalStateException.class, iterator::remove);
+        while (iterator.hasNext()) {
+            if (!iterator.next().getValue()) {
+                iterator.remove();
+            }
+        }
+        assertEquals(map, Map.of(1L, true));
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void bulkBuildTest() {
+        //случайные связи: результат совпадает с TreeMap и по порядку, и по признакам
+        Random random = new Random(11);
+        Map<Long, Boolean> source = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            source.put((long) random.nextInt(1_000_000) + 1, random.nextBoolean());
+        }
+        FriendMap map = new FriendMap(source);
+        assertEquals(new ArrayList<>(map.entrySet()), new ArrayList<>(new TreeMap<>(source).entrySet()));
+        //слияние: новые признаки заменяют старые, остальные связи сохраняются
+        FriendMap merged = new FriendMap(Map.of(1L, false, 3L, true));
+        merged.putAll(Map.of(3L, false, 2L, true, 4L, false));
+        assertEquals(merged, Map.of(1L, false, 2L, true, 3L, false, 4L, false));
+        assertEquals(new ArrayList<>(merged.keySet()), List.of(1L, 2L, 3L, 4L));
+        merged.putAll(new FriendMap(Map.of(1L, true, 5L, true)));
+        assertTrue(merged.isAcknowledged(1));
+        assertEquals(merged.size(), 5);
+    }
+
+    @Test
+    public void idRangeTest() {
+        //id вне [0, 2^62) не упаковываются с сохранением порядка и отклоняются целиком
+        long limit = 1L << 62;
+        FriendMap map = new FriendMap(Map.of(1L, true, limit - 1, false));
+        assertEquals(new ArrayList<>(map.keySet()), List.of(1L, limit - 1));
+        assertThrows(IncorrectParameterException.class, () -> map.putFriend(-1, true));
+        assertThrows(IncorrectParameterException.class, () -> map.putFriend(limit, true));
+        assertThrows(IncorrectParameterException.class, () -> map.putAll(Map.of(2L, true, Long.MAX_VALUE, false)));
+        assertThrows(IncorrectParameterException.class, () -> new FriendMap(Map.of(-5L, true)));
+        assertEquals(map, Map.of(1L, true, limit - 1, false));
+        map.putAll(Map.of(0L, false, 3L, true));
+        assertEquals(new ArrayList<>(map.keySet()), List.of(0L, 1L, 3L, limit - 1));
+        assertTrue(map.isAcknowledged(3));
+    }
+
+    @Test
+    public void equalsHashMapTest() {
+        Map<Long, Boolean> hashMap = new HashMap<>(Map.of(10L, true, 2L, false));
+        FriendMap map = new FriendMap(hashMap);
+        assertEquals(map, hashMap);
+        assertEquals(hashMap, map);
+        assertEquals(map.hashCode(), hashMap.hashCode());
+        assertEquals(map.copy(), map);
+        map.putFriend(2, true);
+        assertNotEquals(map, hashMap);
+        assertSame(FriendMap.of(map), map); //уже FriendMap - без копирования
+    }
+}
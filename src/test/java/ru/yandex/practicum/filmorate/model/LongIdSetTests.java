@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongIdSetTests {
+
+    @Test
+    public void outOfOrderAddTest() {
+        LongIdSet set = new LongIdSet();
+        assertTrue(set.addId(5));
+        assertTrue(set.addId(1));
+        assertTrue(set.addId(3));
+        assertTrue(set.addId(7)); //в конец
+        assertFalse(set.addId(3)); //повтор
+        assertEquals(set.size(), 4);
+        assertEquals(set.toLongArray().length, 4);
+        long[] expected = {1, 3, 5, 7};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(set.getId(i), expected[i]);
+        }
+        assertTrue(set.containsId(5));
+        assertFalse(set.containsId(4));
+        assertThrows(IndexOutOfBoundsException.class, () -> set.getId(4));
+    }
+
+    @Test
+    public void bulkBuildTest() {
+        //случайные идентификаторы с повторами: результат совпадает с TreeSet
+        Random random = new Random(7);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            ids.add((long) random.nextInt(50_000));
+        }
+        LongIdSet set = new LongIdSet(new HashSet<>(ids));
+        TreeSet<Long> expected = new TreeSet<>(ids);
+        assertEquals(set.size(), expected.size());
+        assertEquals(new ArrayList<>(set), new ArrayList<>(expected));
+        //слияние с непустым множеством
+        LongIdSet merged = new LongIdSet(List.of(3L, 1L, 2L));
+        assertTrue(merged.addAll(List.of(5L, 2L, 0L, 5L)));
+        assertEquals(new ArrayList<>(merged), List.of(0L, 1L, 2L, 3L, 5L));
+        assertFalse(merged.addAll(List.of(1L, 3L))); //ничего нового
+        assertFalse(merged.addAll(List.of()));
+        assertTrue(merged.addAll(new LongIdSet(List.of(4L, 6L))));
+        assertEquals(merged.size(), 7);
+    }
+
+    @Test
+    public void removeTest() {
+        LongIdSet set = new LongIdSet(List.of(1L, 2L, 3L, 4L, 5L));
+        assertTrue(set.removeId(3));
+        assertFalse(set.removeId(3));
+        assertFalse(set.remove("3")); //не Long
+        assertTrue(set.remove(5L));
+        assertEquals(new ArrayList<>(set), List.of(1L, 2L, 4L));
+        //удаление через итератор - каждый второй элемент
+        Iterator<Long> iterator = set.iterator();
+        assertThrows(IllegalStateException.class, iterator::remove);
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        assertEquals(new ArrayList<>(set), List.of(1L));
+        set.clear();
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void equalsHashSetTest() {
+        Set<Long> hashSet = new HashSet<>(List.of(10L, 2L, 30L));
+        LongIdSet set = new LongIdSet(hashSet);
+        assertEquals(set, hashSet);
+        assertEquals(hashSet, set);
+        assertEquals(set.hashCode(), hashSet.hashCode());
+        assertEquals(set.copy(), set);
+        set.addId(4);
+        assertNotEquals(set, hashSet);
+        assertSame(LongIdSet.of(set), set); //уже LongIdSet - без копирования
+    }
+
+    @Test
+    public void iteratorModificationTest() {
+        LongIdSet set = new LongIdSet(List.of(1L, 2L));
+        Iterator<Long> iterator = set.iterator();
+        iterator.next();
+        set.addId(3);
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+    }
+}
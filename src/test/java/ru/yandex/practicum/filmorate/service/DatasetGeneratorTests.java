@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.util.TestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//проверка генератора синтетических данных: объемы, распределения и воспроизводимость
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class DatasetGeneratorTests {
+    private static final DatasetSettings SETTINGS = DatasetSettings.builder()
+            .seed(7)
+            .users(500)
+            .films(100)
+            .likesPerUser(10)
+            .friendsPerUser(6)
+            .build();
+    private final DatasetGenerator generator;
+    private final FilmService filmService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void resetDatabase() {
+        jdbcTemplate.update(TestUtils.getSqlForResetUsers(0));
+        jdbcTemplate.update(TestUtils.getSqlForResetFilms(0));
+        filmService.reload();
+    }
+
+    @Test
+    public void volumesTest() {
+        generator.generate(SETTINGS);
+        assertEquals(500, count("select count(*) from users"));
+        assertEquals(100, count("select count(*) from films"));
+        //лайков в среднем likesPerUser на пользователя (с точностью до случайного округления)
+        long likes = count("select count(*) from likes");
+        assertTrue(Math.abs(likes - 5000) < 100);
+        //счетчики лайков согласованы с таблицей likes
+        assertEquals(0, count("select count(*) from films as f " +
+                "where like_count <> (select count(*) from likes as l where l.film_id = f.id)"));
+        assertEquals(500 * 6, count("select count(*) from friends"));
+        assertEquals(0, count("select count(*) from friends where user_id = friend_id"));
+    }
+
+    @Test
+    public void distributionTest() {
+        generator.generate(SETTINGS);
+        //популярность по закону Ципфа: первый фильм набирает лайков на порядок больше сотого
+        long first = count("select like_count from films where id = 1");
+        long last = count("select like_count from films where id = 100");
+        assertTrue(first > 10 * last);
+        //рейтинг в памяти перестроен по сгенерированным данным
+        List<Film> top = filmService.getTopFilms(1L);
+        assertEquals(1, top.get(0).getId());
+        //друзья - соседи по кольцу, поэтому большая часть связей взаимна
+        long mutual = count("select count(*) from friends as f1 " +
+                "inner join friends as f2 on f2.user_id = f1.friend_id and f2.friend_id = f1.user_id");
+        assertTrue(mutual > 500 * 6 * 0.7);
+        //и небольшая доля переброшена к далеким пользователям
+        long distant = count("select count(*) from friends where abs(user_id - friend_id) between 4 and 496");
+        assertTrue((distant > 0) && (distant < 500 * 6 * 0.2));
+    }
+
+    @Test
+    public void reproducibilityTest() {
+        generator.generate(SETTINGS);
+        List<String> likes = getLinks("select film_id, user_id from likes order by film_id, user_id");
+        List<String> friends = getLinks("select user_id, friend_id from friends order by user_id, friend_id");
+        resetDatabase();
+        generator.generate(SETTINGS);
+        assertEquals(likes, getLinks("select film_id, user_id from likes order by film_id, user_id"));
+        assertEquals(friends, getLinks("select user_id, friend_id from friends order by user_id, friend_id"));
+        //другое зерно дает другие данные
+        resetDatabase();
+        generator.generate(DatasetSettings.builder().seed(8).users(500).films(100)
+                .likesPerUser(10).friendsPerUser(6).build());
+        assertNotEquals(likes, getLinks("select film_id, user_id from likes order by film_id, user_id"));
+    }
+
+    private long count(String sqlQuery) {
+        Long value = jdbcTemplate.queryForObject(sqlQuery, Long.class);
+        return (value == null) ? 0 : value;
+    }
+
+    private List<String> getLinks(String sqlQuery) {
+        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> rs.getLong(1) + ":" + rs.getLong(2));
+    }
+}
@@ -1,26 +1,48 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.controller.FilmController;
 import ru.yandex.practicum.filmorate.exception.IncorrectParameterException;
+import ru.yandex.practicum.filmorate.exception.IncorrectParameterFormatException;
 import ru.yandex.practicum.filmorate.exception.ObjectAlreadyExistException;
 import ru.yandex.practicum.filmorate.exception.ObjectNotExistException;
+import ru.yandex.practicum.filmorate.metrics.StatementCounter;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSummary;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.IdLookup;
+import ru.yandex.practicum.filmorate.model.LikeLink;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.util.ConcurrentReads;
 import ru.yandex.practicum.filmorate.util.TestUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static ru.yandex.practicum.filmorate.util.StatementBudget.assertStatements;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
@@ -29,12 +51,19 @@ public class DbFilmTests {
     private static final int FILM_COUNT = 10;
     private static final int USER_COUNT = 10;
     private final FilmService service;
+    private final UserService userService;
+    private final LikeStorage likeStorage;
+    private final FilmStorage filmStorage;
+    private final FilmController filmController;
+    private final ObjectMapper objectMapper;
     private final JdbcTemplate jdbcTemplate;
 
     @BeforeEach
     public void resetDatabase() {
         jdbcTemplate.update(TestUtils.getSqlForResetUsers(USER_COUNT));
         jdbcTemplate.update(TestUtils.getSqlForResetFilms(FILM_COUNT));
+        userService.reload();
+        service.reload();
     }
 
     @Test
@@ -60,6 +89,27 @@ public class DbFilmTests {
         }
     }
 
+    @Test
+    public void getFilmWithLikesAndGenresTest() {
+        //создаем фильм с несколькими жанрами и лайками
+        Film film = TestUtils.generateFilm(0);
+        for (long genreId = 1; genreId <= 3; genreId++) {
+            film.addGenre(Genre.builder().id(genreId).build());
+        }
+        for (long userId = 1; userId <= USER_COUNT; userId++) {
+            film.addLike(userId);
+        }
+        service.create(film);
+        //связи не должны размножаться друг на друга
+        Film stored = service.get(film.getId());
+        assertEquals(stored.getLikes().size(), USER_COUNT);
+        assertEquals(stored.getGenres().size(), 3);
+        for (int i = 0; i < 3; i++) { //жанры упорядочены по id
+            assertEquals(stored.getGenres().get(i).getId(), i + 1);
+        }
+        assertEquals(stored.getMpa().getName(), "G");
+    }
+
     @Test
     public void getAllFilmsTest() {
         service.addLike(1, 2);
@@ -232,4 +282,410 @@ public class DbFilmTests {
             assertEquals(top.get(filmId).getId(), count - filmId);
         }
     }
+
+    @Test
+    public void topFilmsMatchDatabaseTest() {
+        //расставляем лайки случайным образом
+        Random random = new Random(17);
+        for (int filmId = 1; filmId <= FILM_COUNT; filmId++) {
+            for (int userId = 1; userId <= USER_COUNT; userId++) {
+                if (random.nextInt(3) == 0) {
+                    service.addLike(filmId, userId);
+                }
+            }
+        }
+        service.deleteLike(1, 1);
+        service.deleteLike(2, 2);
+        //рейтинг в памяти должен совпадать с результатом SQL-запроса
+        long count = FILM_COUNT;
+        List<Film> top = service.getTopFilms(count);
+        List<Film> expected = likeStorage.getTopFilms(count);
+        assertEquals(top.size(), expected.size());
+        for (int i = 0; i < top.size(); i++) { //порядок фильмов с равным числом лайков не определен
+            assertEquals(top.get(i).getLikes().size(), expected.get(i).getLikes().size());
+        }
+        //после перестройки из базы рейтинг не меняется
+        service.reload();
+        assertEquals(service.getTopFilms(count), top);
+    }
+
+    @Test
+    public void repairLikeCountsTest() {
+        service.addLike(1, 1);
+        //лайки, записанные в обход сервиса, не учтены в счетчике
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (2, 1), (2, 2)");
+        assertEquals(service.getTopFilms(1L).get(0).getId(), 1);
+        //сверка исправляет счетчик фильма 2 и перестраивает рейтинг
+        assertEquals(service.repairLikeCounts(), 1);
+        assertEquals(service.getTopFilms(1L).get(0).getId(), 2);
+        assertEquals(service.repairLikeCounts(), 0);
+    }
+
+    @Test
+    public void refreshReferenceDataTest() {
+        long genreId = 17;
+        assertThrows(IncorrectParameterException.class, () -> service.getGenre(genreId));
+        jdbcTemplate.update("INSERT INTO genres (id, name) VALUES (17, 'Вестерн')");
+        try {
+            //справочник читается из снимка и меняется только после обновления
+            assertThrows(IncorrectParameterException.class, () -> service.getGenre(genreId));
+            service.refreshReferenceData();
+            assertEquals(service.getGenre(genreId).getName(), "Вестерн");
+            assertEquals(service.getAllGenres().size(), 7);
+        } finally {
+            jdbcTemplate.update("DELETE FROM genres WHERE id = 17");
+            service.refreshReferenceData();
+        }
+    }
+
+    @Test
+    public void getFilmsPageTest() {
+        service.addLike(4, 1);
+        service.addLike(4, 2);
+        //первая страница
+        Page<Film> page = service.getPage(0, 4);
+        assertEquals(page.getItems().size(), 4);
+        assertEquals(page.getItems().get(0).getId(), 1);
+        assertEquals(page.getItems().get(3).getLikes().size(), 2);
+        assertEquals(page.getNext(), 4);
+        //последняя неполная страница
+        page = service.getPage(page.getNext(), FILM_COUNT);
+        assertEquals(page.getItems().size(), FILM_COUNT - 4);
+        assertEquals(page.getItems().get(0).getId(), 5);
+        assertNull(page.getNext());
+    }
+
+    @Test
+    public void forEachFilmTest() {
+        service.addLike(3, 1);
+        //потоковый обход выдает те же фильмы в том же порядке, что и getAll
+        List<Film> films = new ArrayList<>();
+        service.forEach(films::add);
+        assertEquals(films, service.getAll());
+        //порции меньше числа фильмов: неполная последняя порция, ровное деление и порция из одного фильма
+        for (int chunkSize : new int[]{1, 3, 5, FILM_COUNT, FILM_COUNT + 1}) {
+            List<Long> ids = new ArrayList<>();
+            filmStorage.forEach(chunkSize, (film) -> ids.add(film.getId()));
+            assertEquals(ids.size(), FILM_COUNT);
+            for (int i = 0; i < FILM_COUNT; i++) {
+                assertEquals(ids.get(i), i + 1L);
+            }
+        }
+    }
+
+    @Test
+    public void streamFilmsJsonTest() throws IOException {
+        service.addLike(2, 1);
+        //выгрузка ?stream=true - json-массив всех фильмов по возрастанию id
+        JsonNode films = objectMapper.readTree(writeStream(filmController.streamAllFilms()));
+        assertTrue(films.isArray());
+        assertEquals(films.size(), FILM_COUNT);
+        for (int i = 0; i < FILM_COUNT; i++) {
+            assertEquals(films.get(i).get("id").asLong(), i + 1L);
+        }
+        assertEquals(films.get(1).get("likes").get(0).asLong(), 1L);
+        //пустая таблица - пустой массив
+        service.deleteAll();
+        assertEquals(writeStream(filmController.streamAllFilms()).trim(), "[]");
+    }
+
+    @Test
+    public void combinedQueryModesTest() {
+        //запрос без режима выдачи (или с выключенной потоковой выдачей) возвращает все фильмы
+        assertEquals(filmController.getAllFilms(Map.of()).size(), FILM_COUNT);
+        assertEquals(filmController.getAllFilms(Map.of("stream", "false")).size(), FILM_COUNT);
+        //несколько режимов сразу ни одному обработчику не подходят и отклоняются
+        assertThrows(IncorrectParameterFormatException.class,
+                () -> filmController.getAllFilms(Map.of("stream", "true", "limit", "5")));
+        assertThrows(IncorrectParameterFormatException.class,
+                () -> filmController.getAllFilms(Map.of("ids", "1,2", "limit", "5")));
+        assertThrows(IncorrectParameterFormatException.class,
+                () -> filmController.getAllFilms(Map.of("view", "summary", "stream", "true")));
+        //то же для лайков фильма
+        assertEquals(filmController.getLikes(1, Map.of()).size(), 0);
+        assertThrows(IncorrectParameterFormatException.class,
+                () -> filmController.getLikes(1, Map.of("stream", "true", "limit", "5")));
+    }
+
+    @Test
+    public void filmWriteStatementCountTest() {
+        Film film = TestUtils.generateFilm(0);
+        for (long genreId = 1; genreId <= 3; genreId++) {
+            film.addGenre(Genre.builder().id(genreId).build());
+        }
+        for (long userId = 1; userId <= 5; userId++) {
+            film.addLike(userId);
+        }
+        //создание: строка фильма и по одному пакету на жанры и лайки
+        assertStatements(3, () -> service.create(film));
+        //обновление: строка фильма, чтение связей и пакет с новым лайком
+        film.addLike(6);
+        assertStatements(3, () -> service.update(film));
+        //фильм без связей - одна вставка, пустые пакеты не отправляются
+        assertStatements(1, () -> service.create(TestUtils.generateFilm(0)));
+        Film stored = service.get(film.getId());
+        assertEquals(stored.getGenres().size(), 3);
+        assertEquals(stored.getLikes().size(), 6);
+    }
+
+    @Test
+    public void failedCreateLeavesNoFilmTest() {
+        //лайк несуществующего пользователя нарушает внешний ключ
+        Film film = TestUtils.generateFilm(0);
+        film.addGenre(Genre.builder().id(1).build());
+        film.addLike(1);
+        film.addLike(USER_COUNT + 1);
+        assertThrows(DataIntegrityViolationException.class, () -> service.create(film));
+        //транзакция откатывается целиком: ни фильма, ни его связей, ни места в рейтинге
+        assertEquals(service.getAll().size(), FILM_COUNT);
+        assertEquals(jdbcTemplate.queryForObject("select count(*) from likes", Integer.class), 0);
+        assertEquals(service.getTopFilms((long) FILM_COUNT + 1).size(), FILM_COUNT);
+    }
+
+    @Test
+    public void updateWritesOnlyChangedLinksTest() {
+        Film film = TestUtils.generateFilm(0);
+        film.addGenre(Genre.builder().id(1).build());
+        film.addGenre(Genre.builder().id(2).build());
+        for (long userId = 1; userId <= USER_COUNT; userId++) {
+            film.addLike(userId);
+        }
+        service.create(film);
+        //неизменные связи не переписываются: только строка фильма и чтение связей
+        StatementCounter.reset();
+        service.update(film);
+        assertEquals(StatementCounter.get(), 2);
+        //меняем часть жанров и лайков
+        film.setGenres(new ArrayList<>(List.of(Genre.builder().id(2).build(), Genre.builder().id(3).build())));
+        film.getLikes().remove(1L);
+        film.getLikes().remove(2L);
+        StatementCounter.reset();
+        service.update(film);
+        assertTrue(StatementCounter.get() <= 5); //строка, чтение и три пакета
+        Film stored = service.get(film.getId());
+        assertEquals(stored.getGenres().size(), 2);
+        assertEquals(stored.getGenres().get(0).getId(), 2);
+        assertEquals(stored.getGenres().get(1).getId(), 3);
+        assertEquals(stored.getLikes(), film.getLikes());
+        assertEquals(service.getTopFilms(1L).get(0).getLikes().size(), USER_COUNT - 2);
+    }
+
+    @Test
+    public void filmCacheHasNoStaleReadsTest() throws Exception {
+        long filmId = 1;
+        //каждый писатель работает со своим пользователем и сразу после записи проверяет результат
+        ConcurrentReads.runWithReaders(4, () -> service.get(filmId), (number) -> {
+            long userId = number + 1;
+            for (int step = 0; step < 50; step++) {
+                service.addLike(filmId, userId);
+                assertTrue(service.get(filmId).getLikes().contains(userId));
+                service.deleteLike(filmId, userId);
+                assertFalse(service.get(filmId).getLikes().contains(userId));
+            }
+        });
+        assertEquals(service.get(filmId).getLikes().size(), 0);
+    }
+
+    @Test
+    public void createFilmsBatchTest() {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 600; i++) { //больше одной порции
+            Film film = TestUtils.generateFilm(0);
+            film.addGenre(Genre.builder().id(1 + i % 6).build());
+            film.addLike(1 + i % USER_COUNT);
+            films.add(film);
+        }
+        Film badRelease = TestUtils.generateFilm(0);
+        badRelease.setReleaseDate(LocalDate.of(1800, 1, 1));
+        films.add(badRelease);
+        Film badName = TestUtils.generateFilm(0);
+        badName.setName("");
+        films.add(badName);
+        Film badLike = TestUtils.generateFilm(0);
+        badLike.addLike(USER_COUNT + 1);
+        films.add(badLike);
+        films.add(TestUtils.generateFilm(1)); //уже существует
+        StatementCounter.reset();
+        List<BatchResult> results = service.createAll(films);
+        //по три пакетных запроса на каждую из двух порций
+        assertEquals(StatementCounter.get(), 6);
+        assertEquals(results.size(), films.size());
+        for (int i = 0; i < 600; i++) {
+            assertEquals(results.get(i).getStatus(), 200);
+            Film film = service.get(results.get(i).getId());
+            assertTrue(TestUtils.compareFilms(film, films.get(i)));
+            assertEquals(film.getGenres().get(0).getId(), 1 + i % 6);
+            assertEquals(film.getLikes(), Set.of((long) (1 + i % USER_COUNT)));
+        }
+        assertEquals(results.get(600).getStatus(), 400);
+        assertEquals(results.get(601).getStatus(), 400);
+        assertEquals(results.get(602).getStatus(), 404);
+        assertEquals(results.get(603).getStatus(), 409);
+        assertEquals(service.getAll().size(), FILM_COUNT + 600);
+    }
+
+    @Test
+    public void addLikesBatchTest() {
+        service.addLike(1, 1);
+        List<LikeLink> likes = new ArrayList<>();
+        for (long userId = 1; userId <= USER_COUNT; userId++) {
+            likes.add(new LikeLink(2, userId));
+        }
+        likes.add(new LikeLink(1, 1)); //уже есть
+        likes.add(new LikeLink(1, 2));
+        likes.add(new LikeLink(1, 2)); //повтор в пакете
+        likes.add(new LikeLink(FILM_COUNT + 1, 1));
+        likes.add(new LikeLink(1, USER_COUNT + 1));
+        likes.add(new LikeLink(1, 0));
+        StatementCounter.reset();
+        List<BatchResult> results = service.addLikes(likes);
+        //чтение существующих, пакет вставок, пакет счетчиков
+        assertEquals(StatementCounter.get(), 3);
+        for (int i = 0; i < likes.size() - 3; i++) {
+            assertEquals(results.get(i).getStatus(), 200);
+        }
+        assertEquals(results.get(likes.size() - 3).getStatus(), 404);
+        assertEquals(results.get(likes.size() - 2).getStatus(), 404);
+        assertEquals(results.get(likes.size() - 1).getStatus(), 400);
+        assertEquals(service.get(1).getLikes(), Set.of(1L, 2L));
+        assertEquals(service.get(2).getLikes().size(), USER_COUNT);
+        //счетчики и рейтинг учитывают только новые лайки
+        assertEquals(jdbcTemplate.queryForObject("select like_count from films where id = 1", Integer.class), 2);
+        List<Film> top = service.getTopFilms(2L);
+        assertEquals(top.get(0).getId(), 2);
+        assertEquals(top.get(1).getId(), 1);
+    }
+
+    @Test
+    public void getFilmsByIdsTest() {
+        service.addLike(3, 1);
+        service.get(2); //фильм в кэше
+        StatementCounter.reset();
+        IdLookup<Film> result = service.getByIds(List.of(3L, 17L, 2L, 1L, 3L));
+        //промахи читаются одним пакетом: фильмы, лайки, жанры
+        assertEquals(StatementCounter.get(), 3);
+        assertEquals(result.getItems().size(), 3);
+        assertEquals(result.getItems().get(0).getId(), 3);
+        assertEquals(result.getItems().get(1).getId(), 2);
+        assertEquals(result.getItems().get(2).getId(), 1);
+        assertEquals(result.getItems().get(0).getLikes(), Set.of(1L));
+        assertEquals(result.getMissing(), List.of(17L));
+        //повторный запрос обслуживается кэшем
+        StatementCounter.reset();
+        service.getByIds(List.of(1L, 2L, 3L));
+        assertEquals(StatementCounter.get(), 0);
+    }
+
+    @Test
+    public void filmSummaryTest() {
+        Film film = TestUtils.generateFilm(0);
+        film.addGenre(Genre.builder().id(2).build());
+        for (long userId = 1; userId <= 3; userId++) {
+            film.addLike(userId);
+        }
+        long id = service.create(film).getId();
+        service.addLike(1, 1);
+        //краткое представление читает строки фильмов и жанры, но не лайки
+        StatementCounter.reset();
+        List<FilmSummary> top = service.getTopSummaries(2L);
+        assertEquals(StatementCounter.get(), 2);
+        assertEquals(top.get(0).getId(), id);
+        assertEquals(top.get(0).getLikeCount(), 3);
+        assertEquals(top.get(0).getGenres().get(0).getId(), 2);
+        assertEquals(top.get(1).getId(), 1);
+        assertEquals(top.get(1).getLikeCount(), 1);
+        FilmSummary summary = service.getSummary(id);
+        assertEquals(summary.getName(), film.getName());
+        assertEquals(summary.getMpa().getName(), "G");
+        assertEquals(service.getSummaryPage(0, FILM_COUNT + 1).getItems().size(), FILM_COUNT + 1);
+        assertThrows(IncorrectParameterException.class, () -> service.getSummary(17));
+    }
+
+    @Test
+    public void likesPageAndCountTest() {
+        long filmId = 2;
+        for (long userId = USER_COUNT; userId >= 1; userId--) {
+            service.addLike(filmId, userId);
+        }
+        //страницы идут по возрастанию id пользователей
+        Page<User> page = service.getLikesPage(filmId, 0, 4);
+        assertEquals(page.getItems().size(), 4);
+        assertEquals(page.getItems().get(0).getId(), 1);
+        assertEquals(page.getNext(), 4);
+        page = service.getLikesPage(filmId, page.getNext(), 4);
+        assertEquals(page.getItems().get(0).getId(), 5);
+        page = service.getLikesPage(filmId, page.getNext(), 4);
+        assertEquals(page.getItems().size(), 2);
+        assertNull(page.getNext());
+        //потоковая выдача возвращает всех в том же порядке
+        List<Long> streamed = new ArrayList<>();
+        service.streamLikes(filmId).accept((user) -> streamed.add(user.getId()));
+        assertEquals(streamed.size(), USER_COUNT);
+        assertEquals(streamed.get(USER_COUNT - 1), USER_COUNT);
+        //число лайков без обращения к базе
+        StatementCounter.reset();
+        assertEquals(service.getLikeCount(filmId), USER_COUNT);
+        assertEquals(StatementCounter.get(), 0);
+        assertThrows(IncorrectParameterException.class, () -> service.getLikeCount(17));
+        assertThrows(IncorrectParameterException.class, () -> service.streamLikes(17));
+    }
+
+    @Test
+    public void endpointStatementBudgetTest() {
+        //бюджеты запросов конечных точек фильмов: рост числа означает N+1 или лишнее обращение
+        assertStatements(3, () -> service.get(1)); //фильм, лайки, жанры
+        assertStatements(0, () -> service.get(1)); //из кэша
+        assertStatements(2, () -> service.addLike(2, 1)); //вставка и счетчик
+        assertStatements(1, () -> service.addLike(2, 1)); //повтор: только попытка вставки
+        assertStatements(1, () -> service.getLikes(2));
+        assertStatements(2, () -> service.deleteLike(2, 1));
+        List<Film> top = assertStatements(3, () -> service.getTopFilms(5L)); //одним пакетом, а не по фильму
+        assertEquals(top.size(), 5);
+        assertStatements(3, () -> service.getAll());
+        assertStatements(0, () -> service.getAllGenres()); //справочники в памяти
+        assertStatements(0, () -> service.getAllMpa());
+        assertStatements(1, () -> service.delete(3));
+    }
+
+    @Test
+    public void deleteUserRemovesOnlyHisLikesTest() {
+        service.addLike(1, 3);
+        service.addLike(2, 3);
+        service.addLike(1, 4);
+        service.get(1);
+        service.get(5);
+        assertTrue(userService.delete(3));
+        //лайки удаленного пользователя сняты с рейтинга и из кэша только у его фильмов
+        assertEquals(service.getLikeCount(1), 1);
+        assertEquals(service.getLikeCount(2), 0);
+        assertEquals(service.get(1).getLikes(), Set.of(4L));
+        assertStatements(0, () -> service.get(5));
+        assertEquals(service.getTopFilms(1L).get(0).getId(), 1);
+        assertEquals(likeStorage.getTopFilms(2L).get(1).getLikes().size(), 0);
+        assertEquals(service.repairLikeCounts(), 0);
+        assertFalse(userService.delete(3));
+    }
+
+    @Test
+    public void rowsScannedTest() {
+        //каждый лайк фильма - отдельная прочитанная строка результата
+        StatementCounter.reset();
+        filmStorage.getByIds(List.of(1L));
+        long rows = StatementCounter.getRows();
+        assertTrue(rows > 0);
+        for (long userId = 1; userId <= USER_COUNT; userId++) {
+            service.addLike(1, userId);
+        }
+        StatementCounter.reset();
+        filmStorage.getByIds(List.of(1L));
+        assertEquals(StatementCounter.getRows(), rows + USER_COUNT);
+        StatementCounter.reset();
+        assertEquals(StatementCounter.getRows(), 0);
+    }
+
+    private static String writeStream(StreamingResponseBody body) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        body.writeTo(output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
 }
@@ -10,15 +10,23 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.exception.IncorrectParameterException;
 import ru.yandex.practicum.filmorate.exception.ObjectAlreadyExistException;
 import ru.yandex.practicum.filmorate.exception.ObjectNotExistException;
+import ru.yandex.practicum.filmorate.metrics.StatementCounter;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.FriendLink;
+import ru.yandex.practicum.filmorate.model.IdLookup;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.util.ConcurrentReads;
 import ru.yandex.practicum.filmorate.util.TestUtils;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static ru.yandex.practicum.filmorate.util.StatementBudget.assertStatements;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
@@ -31,6 +39,7 @@ public class DbUserTests {
     @BeforeEach
     public void resetDatabase() {
         jdbcTemplate.update(TestUtils.getSqlForResetUsers(USER_COUNT));
+        service.reload();
     }
 
     @Test
@@ -250,4 +259,155 @@ public class DbUserTests {
         assertEquals(service.getFriends(1).size(), 0);
         assertFalse(service.deleteFriend(1, 2)); //удаляем еще раз
     }
+
+    @Test
+    public void getUsersPageTest() {
+        service.addFriend(3, 4);
+        service.addFriend(4, 3);
+        service.addFriend(4, 9);
+        //первая страница
+        Page<User> page = service.getPage(0, 4);
+        assertEquals(page.getItems().size(), 4);
+        assertEquals(page.getItems().get(0).getId(), 1);
+        assertEquals(page.getNext(), 4);
+        //связи пользователей страницы загружены вместе с подтверждениями
+        Map<Long, Boolean> friends = page.getItems().get(3).getFriends();
+        assertEquals(friends.size(), 2);
+        assertTrue(friends.get(3L));
+        assertFalse(friends.get(9L));
+        //последняя неполная страница
+        page = service.getPage(page.getNext(), USER_COUNT);
+        assertEquals(page.getItems().size(), USER_COUNT - 4);
+        assertNull(page.getNext());
+    }
+
+    @Test
+    public void userCacheHasNoStaleFriendsTest() throws Exception {
+        int writerCount = 4;
+        //читатели заполняют кэш всеми пользователями, каждый писатель меняет связь своей пары
+        ConcurrentReads.runWithReaders(writerCount, () -> {
+            for (long id = 1; id <= 2 * writerCount; id++) {
+                service.get(id);
+            }
+        }, (number) -> {
+            long id1 = 2 * number + 1;
+            long id2 = 2 * number + 2;
+            for (int step = 0; step < 50; step++) {
+                service.addFriend(id1, id2);
+                assertFalse(service.get(id1).getFriends().isAcknowledged(id2));
+                service.addFriend(id2, id1);
+                assertTrue(service.get(id1).getFriends().isAcknowledged(id2));
+                service.deleteFriend(id2, id1);
+                assertFalse(service.get(id1).getFriends().isAcknowledged(id2));
+                assertTrue(service.get(id1).getFriends().containsFriend(id2));
+                service.deleteFriend(id1, id2);
+                assertFalse(service.get(id1).getFriends().containsFriend(id2));
+            }
+        });
+    }
+
+    @Test
+    public void userCacheInvalidationTest() {
+        //кэшируем обоих участников связи, затем меняем ее с каждой стороны
+        service.get(1);
+        service.get(2);
+        service.addFriend(1, 2);
+        assertTrue(service.get(1).getFriends().containsFriend(2));
+        assertFalse(service.get(2).getFriends().containsFriend(1));
+        service.addFriend(2, 1); //подтверждение меняет признак и у первого пользователя
+        assertTrue(service.get(1).getFriends().isAcknowledged(2));
+        assertTrue(service.get(2).getFriends().isAcknowledged(1));
+        //создание с подтвержденным другом меняет и закэшированного друга
+        service.get(3);
+        User user = TestUtils.generateUser(0);
+        user.setFriends(Map.of(3L, true));
+        long newId = service.create(user).getId();
+        assertTrue(service.get(3).getFriends().isAcknowledged(newId));
+        //удаление пользователя убирает его из закэшированных друзей и подписчиков
+        service.get(1);
+        service.get(3);
+        assertTrue(service.delete(2));
+        assertFalse(service.get(1).getFriends().containsFriend(2));
+        assertTrue(service.delete(newId));
+        assertFalse(service.get(3).getFriends().containsFriend(newId));
+    }
+
+    @Test
+    public void existenceCheckWithoutQueriesTest() {
+        //проверка наличия идет по индексу в памяти: отказ не требует обращения к базе
+        StatementCounter.reset();
+        assertThrows(IncorrectParameterException.class, () -> service.addFriend(1, USER_COUNT + 1));
+        assertThrows(IncorrectParameterException.class, () -> service.getFriends(USER_COUNT + 1));
+        assertEquals(StatementCounter.get(), 0);
+        //индекс учитывает созданных и удаленных пользователей
+        User user = service.create(TestUtils.generateUser(0));
+        service.addFriend(1, user.getId());
+        assertTrue(service.delete(user.getId()));
+        assertThrows(IncorrectParameterException.class, () -> service.addFriend(1, user.getId()));
+    }
+
+    @Test
+    public void addFriendsBatchTest() {
+        service.addFriend(1, 2);
+        User cached = service.get(2); //пользователь в кэше должен обновиться
+        assertFalse(cached.getFriends().containsKey(1L));
+        List<FriendLink> links = new ArrayList<>();
+        links.add(new FriendLink(1, 2)); //уже есть
+        links.add(new FriendLink(2, 1));
+        links.add(new FriendLink(1, 3));
+        links.add(new FriendLink(1, 3)); //повтор в пакете
+        links.add(new FriendLink(1, USER_COUNT + 1));
+        links.add(new FriendLink(0, 1));
+        StatementCounter.reset();
+        List<BatchResult> results = service.addFriends(links);
+        assertEquals(StatementCounter.get(), 2); //чтение существующих и пакет вставок
+        for (int i = 0; i < 4; i++) {
+            assertEquals(results.get(i).getStatus(), 200);
+        }
+        assertEquals(results.get(4).getStatus(), 404);
+        assertEquals(results.get(5).getStatus(), 400);
+        Map<Long, Boolean> friends = service.get(1).getFriends();
+        assertEquals(friends.size(), 2);
+        assertTrue(friends.get(2L));
+        assertFalse(friends.get(3L));
+        assertTrue(service.get(2).getFriends().get(1L));
+    }
+
+    @Test
+    public void getUsersByIdsTest() {
+        service.addFriend(1, 2);
+        service.addFriend(2, 1);
+        service.addFriend(3, 1);
+        StatementCounter.reset();
+        IdLookup<User> result = service.getByIds(List.of(3L, USER_COUNT + 1L, 1L, 2L));
+        assertEquals(StatementCounter.get(), 2); //пользователи с друзьями и подтверждения
+        assertEquals(result.getMissing(), List.of(USER_COUNT + 1L));
+        List<User> users = result.getItems();
+        assertEquals(users.size(), 3);
+        assertEquals(users.get(0).getId(), 3);
+        assertEquals(users.get(1).getId(), 1);
+        assertEquals(users.get(2).getId(), 2);
+        assertFalse(users.get(0).getFriends().get(1L));
+        assertTrue(users.get(1).getFriends().get(2L));
+        assertEquals(users.get(1).getFriends().size(), 1);
+    }
+
+    @Test
+    public void endpointStatementBudgetTest() {
+        //бюджеты запросов конечных точек пользователей: рост числа означает N+1 или лишнее обращение
+        assertStatements(2, () -> service.get(1)); //строка с друзьями и подтверждения
+        assertStatements(0, () -> service.get(1)); //из кэша
+        User user = assertStatements(1, () -> service.create(TestUtils.generateUser(0))); //без друзей - одна вставка
+        assertStatements(1, () -> service.update(user));
+        assertStatements(3, () -> service.addFriend(1, 2)); //вставка и чтение друга
+        service.addFriend(2, 1);
+        service.addFriend(1, 3);
+        service.addFriend(2, 3);
+        assertStatements(2, () -> service.getFriends(1));
+        assertStatements(2, () -> service.getAcknowledgedFriends(1));
+        List<User> common = assertStatements(2, () -> service.getCommonFriends(1, 2));
+        assertEquals(common.size(), 1);
+        assertStatements(1, () -> service.deleteFriend(1, 3));
+        assertStatements(1, () -> service.getAll());
+    }
 }
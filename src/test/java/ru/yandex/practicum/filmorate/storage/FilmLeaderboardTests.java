@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FilmLeaderboardTests {
+    private static final int FILM_COUNT = 50;
+
+    @Test
+    public void orderTest() {
+        FilmLeaderboard leaderboard = new FilmLeaderboard(null);
+        leaderboard.put(1, 5);
+        leaderboard.put(2, 7);
+        leaderboard.put(3, 5);
+        leaderboard.decrement(2);
+        leaderboard.decrement(2); //теперь у фильма 2 пять лайков: равные идут по возрастанию id
+        assertEquals(leaderboard.getTop(10), List.of(1L, 2L, 3L));
+        leaderboard.increment(3);
+        assertEquals(leaderboard.getTop(1), List.of(3L));
+        leaderboard.remove(3);
+        assertEquals(leaderboard.getTop(10), List.of(1L, 2L));
+        assertEquals(leaderboard.getLikeCount(3), 0);
+    }
+
+    @Test
+    public void topWithoutDuplicatesUnderChangesTest() throws Exception {
+        //фильмы постоянно перемещаются, а рейтинг каждый раз содержит каждый из них ровно один раз
+        FilmLeaderboard leaderboard = new FilmLeaderboard(null);
+        for (long filmId = 1; filmId <= FILM_COUNT; filmId++) {
+            leaderboard.put(filmId, 0);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int t = 0; t < 3; t++) {
+                int seed = t;
+                executor.submit(() -> {
+                    long step = seed;
+                    while (!done.get()) {
+                        long filmId = 1 + step++ * 7 % FILM_COUNT;
+                        if (step % 3 == 0) {
+                            leaderboard.decrement(filmId);
+                        } else {
+                            leaderboard.increment(filmId);
+                        }
+                    }
+                });
+            }
+            Future<?> reader = executor.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    List<Long> top = leaderboard.getTop(FILM_COUNT);
+                    assertEquals(top.size(), FILM_COUNT);
+                    assertEquals(new HashSet<>(top).size(), FILM_COUNT);
+                }
+            });
+            reader.get();
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrentReadersTest() throws Exception {
+        //несколько читателей обходят рейтинг одновременно с перемещениями фильмов
+        FilmLeaderboard leaderboard = new FilmLeaderboard(null);
+        for (long filmId = 1; filmId <= FILM_COUNT; filmId++) {
+            leaderboard.put(filmId, (int) filmId);
+        }
+        int readerCount = 4;
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(readerCount + 2);
+        try {
+            for (int t = 0; t < 2; t++) {
+                long shift = t;
+                executor.submit(() -> {
+                    long step = shift;
+                    while (!done.get()) {
+                        long filmId = 1 + step++ * 3 % FILM_COUNT;
+                        leaderboard.increment(filmId);
+                        leaderboard.decrement(filmId);
+                    }
+                });
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < readerCount; t++) {
+                readers.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        List<Long> top = leaderboard.getTop(10);
+                        assertEquals(top.size(), 10);
+                        assertEquals(new HashSet<>(top).size(), 10);
+                    }
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        //после остановки писателей каждый фильм вернулся на свое место
+        List<Long> expected = new ArrayList<>();
+        for (long filmId = FILM_COUNT; filmId > FILM_COUNT - 10; filmId--) {
+            expected.add(filmId);
+        }
+        assertEquals(leaderboard.getTop(10), expected);
+    }
+}
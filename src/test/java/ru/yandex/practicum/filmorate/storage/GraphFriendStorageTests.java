@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.IncorrectParameterException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.util.TestUtils;
+
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//сверка графа друзей в памяти с хранилищем на запросах к базе
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class GraphFriendStorageTests {
+    private static final int USER_COUNT = 20;
+    private final DbFriendStorage dbStorage;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private GraphFriendStorage graphStorage;
+
+    @BeforeEach
+    public void resetDatabase() {
+        jdbcTemplate.update(TestUtils.getSqlForResetUsers(USER_COUNT));
+        graphStorage = new GraphFriendStorage(namedJdbcTemplate);
+        graphStorage.reload();
+    }
+
+    @Test
+    public void randomOperationsTest() {
+        Random random = new Random(17);
+        for (int step = 0; step < 500; step++) {
+            long userId = random.nextInt(USER_COUNT) + 1;
+            long friendId = random.nextInt(USER_COUNT) + 1;
+            if (userId == friendId) {
+                continue;
+            }
+            if (random.nextInt(4) == 0) {
+                graphStorage.deleteFriend(userId, friendId);
+            } else {
+                graphStorage.addFriend(userId, friendId);
+            }
+            if (step % 50 == 0) {
+                assertSameResults();
+            }
+        }
+        assertSameResults();
+        //граф, построенный заново по базе, дает те же ответы
+        graphStorage.reload();
+        assertSameResults();
+    }
+
+    @Test
+    public void addAndDeleteFriendsOfUserTest() {
+        User user = TestUtils.generateUser(3);
+        Map<Long, Boolean> friends = new HashMap<>();
+        friends.put(1L, true);
+        friends.put(2L, false);
+        friends.put(5L, true);
+        user.setFriends(friends);
+        graphStorage.addFriendsOfUser(user);
+        graphStorage.addFriend(7, 3);
+        assertSameResults();
+        graphStorage.deleteFriendsOfUser(3);
+        assertSameResults();
+        graphStorage.addFriend(1, 2);
+        graphStorage.deleteAllFriends();
+        assertSameResults();
+    }
+
+    @Test
+    public void transactionTest() {
+        graphStorage.addFriend(1, 2);
+        //до фиксации граф не меняется, после отката остается прежним
+        transactionTemplate.executeWithoutResult((status) -> {
+            assertTrue(graphStorage.addFriend(3, 4));
+            assertTrue(graphStorage.deleteFriend(1, 2));
+            assertTrue(graphStorage.addFriends(new long[]{7, 8}, new long[]{8, 7})[1]);
+            assertEquals(graphStorage.getFriends(3).size(), 0);
+            assertEquals(graphStorage.getFriends(8).size(), 0);
+            status.setRollbackOnly();
+        });
+        assertSameResults();
+        assertEquals(graphStorage.getFriends(1).size(), 1);
+        //после фиксации граф совпадает с базой
+        transactionTemplate.executeWithoutResult((status) -> {
+            graphStorage.addFriend(3, 4);
+            graphStorage.deleteFriend(1, 2);
+            graphStorage.loadFriends(new long[]{5, 6}, new long[]{6, 5});
+            graphStorage.addFriends(new long[]{7, 8, 7}, new long[]{8, 7, 8});
+        });
+        assertSameResults();
+        assertEquals(graphStorage.getAcknowledgedFriends(5).size(), 1);
+        assertEquals(graphStorage.getAcknowledgedFriends(8).size(), 1);
+    }
+
+    @Test
+    public void readsDoNotWaitForDatabaseWriteTest() throws Exception {
+        graphStorage.addFriend(3, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (Connection connection = jdbcTemplate.getDataSource().getConnection()) {
+            //незафиксированная запись той же связи в другой транзакции: запись через граф ждет ее в базе
+            connection.setAutoCommit(false);
+            connection.createStatement().executeUpdate("insert into friends (user_id, friend_id) values (1, 2)");
+            Future<Boolean> writer = executor.submit(() -> graphStorage.addFriend(1, 2));
+            Thread.sleep(100);
+            assertFalse(writer.isDone());
+            //чтение из графа в это время не ждет
+            Future<List<User>> reader = executor.submit(() -> graphStorage.getFriends(3));
+            assertEquals(reader.get(500, TimeUnit.MILLISECONDS).size(), 1);
+            connection.rollback();
+            assertTrue(writer.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertSameResults();
+    }
+
+    @Test
+    public void largeIdTest() {
+        //id вне диапазона int отвергаются до записи в базу и не совпадают с младшими id при чтении
+        long largeId = (1L << 32) + 1;
+        graphStorage.addFriend(1, 2);
+        assertThrows(IncorrectParameterException.class, () -> graphStorage.addFriend(largeId, 2));
+        assertThrows(IncorrectParameterException.class, () -> graphStorage.addFriend(1, largeId));
+        assertEquals(graphStorage.getFriends(largeId).size(), 0);
+        assertFalse(graphStorage.deleteFriend(largeId, 2));
+        assertSameResults();
+    }
+
+    private void assertSameResults() {
+        for (long id = 1; id <= USER_COUNT; id++) {
+            assertEquals(toMap(dbStorage.getFriends(id)), toMap(graphStorage.getFriends(id)));
+            assertEquals(toMap(dbStorage.getAcknowledgedFriends(id)),
+                    toMap(graphStorage.getAcknowledgedFriends(id)));
+            long otherId = id % USER_COUNT + 1;
+            assertEquals(toMap(dbStorage.getCommonFriends(id, otherId)),
+                    toMap(graphStorage.getCommonFriends(id, otherId)));
+        }
+    }
+
+    //порядок пользователей в ответе хранилища на базе не гарантирован
+    private static Map<Long, User> toMap(List<User> users) {
+        return users.stream().collect(Collectors.toMap(User::getId, Function.identity()));
+    }
+}
@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdIndexTests {
+
+    @Test
+    public void addAndRemoveTest() {
+        IdIndex index = new IdIndex();
+        assertFalse(index.contains(1));
+        index.add(1);
+        index.add(64);
+        index.add(100_000); //индекс расширяется
+        assertTrue(index.contains(1));
+        assertTrue(index.contains(64));
+        assertTrue(index.contains(100_000));
+        assertFalse(index.contains(2));
+        assertFalse(index.contains(63));
+        assertFalse(index.contains(99_999));
+        index.remove(64);
+        assertFalse(index.contains(64));
+        assertTrue(index.contains(1));
+    }
+
+    @Test
+    public void invalidIdsTest() {
+        IdIndex index = new IdIndex();
+        index.add(0);
+        index.add(-5);
+        assertFalse(index.contains(0));
+        assertFalse(index.contains(-5));
+        assertFalse(index.contains(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void rebuildTest() {
+        IdIndex index = new IdIndex();
+        index.add(3);
+        index.rebuild(() -> new long[]{1, 2, 500});
+        assertFalse(index.contains(3));
+        assertTrue(index.contains(1));
+        assertTrue(index.contains(2));
+        assertTrue(index.contains(500));
+        index.clear();
+        assertFalse(index.contains(1));
+    }
+
+    @Test
+    public void rebuildWhileCreatingTest() throws Exception {
+        //писатели вставляют строку в "таблицу" и отмечают id, перестройка читает таблицу медленно
+        IdIndex index = new IdIndex();
+        Set<Long> table = new ConcurrentSkipListSet<>();
+        int writerCount = 3;
+        ExecutorService executor = Executors.newFixedThreadPool(writerCount);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < writerCount; t++) {
+                long first = t + 1;
+                writers.add(executor.submit(() -> {
+                    for (long id = first; id <= 300_000; id += writerCount) {
+                        table.add(id);
+                        index.add(id);
+                    }
+                }));
+            }
+            while (!writers.stream().allMatch(Future::isDone)) {
+                index.rebuild(() -> {
+                    long[] ids = table.stream().mapToLong(Long::longValue).toArray();
+                    try {
+                        Thread.sleep(1); //пока база читается, появляются новые строки
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return ids;
+                });
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (long id = 1; id <= 300_000; id++) {
+            assertTrue(index.contains(id), "id " + id);
+        }
+    }
+
+    @Test
+    public void clearWhileGrowingTest() throws Exception {
+        //очистка уменьшает карту, а параллельная запись в дальние слова не должна выходить за ее границу
+        IdIndex index = new IdIndex();
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (long id = 1; id <= 200_000; id++) {
+                    index.add(id);
+                }
+            });
+            Future<?> cleaner = executor.submit(() -> {
+                while (!done.get()) {
+                    index.clear();
+                }
+            });
+            writer.get();
+            done.set(true);
+            cleaner.get();
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+        index.add(200_001);
+        assertTrue(index.contains(200_001));
+    }
+}
@@ -0,0 +1,240 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendMap;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LongIdSet;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.util.TestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+    Проверка планов запросов хранилищ: каждый запрос, выполненный операцией хранилища,
+    перехватывается через статистику запросов H2 и разбирается командой EXPLAIN.
+    Обращение к таблице без условия по индексу (полный перебор таблицы или индекса) допустимо
+    только для ведущей таблицы операций, которые по смыслу читают всю таблицу,
+    и для выборки первых строк в порядке индекса (order by ... limit без сортировки).
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class QueryPlanTests {
+    private static final int FILM_COUNT = 100;
+    private static final int USER_COUNT = 200;
+    //обращение к таблице в плане: /* PUBLIC.ИНДЕКС: условие */ или /* PUBLIC.ТАБЛИЦА.tableScan */
+    private static final Pattern ACCESS = Pattern.compile("/\\* PUBLIC\\.([A-Z0-9_.]+?)(?:\\.tableScan)?(: [^*]*)? \\*/");
+    private final DbFilmStorage filmStorage;
+    private final DbLikeStorage likeStorage;
+    private final DbFriendStorage friendStorage;
+    private final DbUserStorage userStorage;
+    private final DbGenreStorage genreStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void resetDatabase() {
+        jdbcTemplate.update(TestUtils.getSqlForResetUsers(USER_COUNT));
+        jdbcTemplate.update(TestUtils.getSqlForResetFilms(FILM_COUNT));
+        //примерно по 30 лайков на фильм и по 18 друзей на пользователя
+        jdbcTemplate.update("insert into likes (film_id, user_id) select f.id, u.id from films as f, users as u " +
+                "where mod(f.id + u.id, 7) = 0");
+        jdbcTemplate.update("update films as f set like_count = (select count(*) from likes as l where l.film_id = f.id)");
+        jdbcTemplate.update("insert into friends (user_id, friend_id) select a.id, b.id from users as a, users as b " +
+                "where a.id <> b.id and mod(a.id * 3 + b.id, 11) = 0");
+        jdbcTemplate.execute("analyze"); //планировщик должен видеть реальные размеры таблиц
+        filmStorage.refresh();
+        userStorage.refresh();
+    }
+
+    @AfterEach
+    public void stopStatistics() {
+        jdbcTemplate.execute("set query_statistics false");
+    }
+
+    @Test
+    public void secondaryIndexesTest() {
+        //обратные связи покрыты ровно одним индексом, общим с внешним ключом
+        assertEquals(List.of("FRIENDS_FRIEND_ID_IDX"), getIndexes("FRIENDS", "FRIEND_ID"));
+        assertEquals(List.of("LIKES_USER_ID_IDX"), getIndexes("LIKES", "USER_ID"));
+        assertEquals(List.of("FILM_GENRES_GENRE_ID_IDX"), getIndexes("FILM_GENRES", "GENRE_ID"));
+    }
+
+    @Test
+    public void filmStorageQueriesTest() {
+        assertIndexed(() -> {
+            filmStorage.get(3);
+            filmStorage.getPage(10, 10);
+            filmStorage.getByIds(List.of(5L, 7L, 9L));
+            filmStorage.getSummaryPage(10, 10);
+            filmStorage.getSummariesByIds(List.of(5L, 7L, 9L));
+            Film film = TestUtils.generateFilm(FILM_COUNT + 1);
+            film.addGenre(Genre.builder().id(1).build());
+            film.addLike(1);
+            filmStorage.create(film);
+            film.addGenre(Genre.builder().id(2).build());
+            film.addLike(2);
+            filmStorage.update(film);
+            filmStorage.delete(film.getId());
+        });
+        assertFullReads(() -> {
+            filmStorage.refresh();
+            filmStorage.getAll();
+            filmStorage.getAllSummaries();
+            filmStorage.deleteAll();
+        });
+    }
+
+    @Test
+    public void likeStorageQueriesTest() {
+        assertIndexed(() -> {
+            likeStorage.getLikes(7);
+            likeStorage.getLikesPage(7, 50, 10);
+            likeStorage.getLikeIds(7);
+            likeStorage.addLike(1, 1);
+            likeStorage.deleteLike(1, 1);
+            likeStorage.applyLikes(2, new LongIdSet(List.of(1L, 2L)), new LongIdSet(List.of(5L)));
+            likeStorage.addLikes(new long[]{3, 4, 5}, new long[]{1, 2, 3});
+            likeStorage.getTopFilms(10L);
+        });
+        assertFullReads(likeStorage::recountLikes);
+    }
+
+    @Test
+    public void friendStorageQueriesTest() {
+        assertIndexed(() -> {
+            friendStorage.addFriend(1, 2);
+            User user = TestUtils.generateUser(1);
+            FriendMap friends = new FriendMap();
+            friends.putFriend(3, true);
+            friends.putFriend(4, false);
+            user.setFriends(friends);
+            friendStorage.addFriendsOfUser(user);
+            friendStorage.addFriends(new long[]{5, 6}, new long[]{7, 8});
+            friendStorage.getFriends(5);
+            friendStorage.getAcknowledgedFriends(5);
+            friendStorage.getCommonFriends(5, 6);
+            friendStorage.deleteFriend(1, 2);
+            friendStorage.deleteFriendsOfUser(1);
+        });
+        assertFullReads(friendStorage::deleteAllFriends);
+    }
+
+    @Test
+    public void userStorageQueriesTest() {
+        assertIndexed(() -> {
+            userStorage.get(3);
+            userStorage.getPage(10, 10);
+            userStorage.getByIds(List.of(5L, 7L, 9L));
+            User user = TestUtils.generateUser(USER_COUNT + 1);
+            userStorage.create(user);
+            user.setName("other");
+            userStorage.update(user);
+            userStorage.delete(7);
+        });
+        assertFullReads(() -> {
+            userStorage.refresh();
+            userStorage.getAll();
+            userStorage.deleteAll();
+        });
+    }
+
+    @Test
+    public void genreStorageQueriesTest() {
+        assertIndexed(() -> genreStorage.getFilmGenres(3));
+        assertFullReads(genreStorage::refresh);
+    }
+
+    ////////////////////////////// Разбор планов /////////////////////////////
+
+    //все обращения к таблицам идут по индексу с условием
+    private void assertIndexed(Runnable operation) {
+        for (String sql : capture(operation)) {
+            List<String> scans = getScans(explain(sql));
+            assertTrue(scans.isEmpty(), "Полный перебор " + scans + " в запросе: " + sql);
+        }
+    }
+
+    //без условия читается только ведущая таблица запроса, связанные с ней - по индексу
+    private void assertFullReads(Runnable operation) {
+        for (String sql : capture(operation)) {
+            String plan = explain(sql);
+            List<String> scans = getScans(plan);
+            assertTrue(scans.isEmpty() || ((scans.size() == 1) && scans.get(0).equals(getAccesses(plan).get(0))),
+                    "Полный перебор " + scans + " в запросе: " + sql);
+        }
+    }
+
+    //запросы на чтение и изменение, выполненные операцией (вставки значений перебора не требуют)
+    private List<String> capture(Runnable operation) {
+        jdbcTemplate.execute("set query_statistics false"); //сбрасывает собранную статистику
+        jdbcTemplate.execute("set query_statistics_max_entries 10000");
+        jdbcTemplate.execute("set query_statistics true");
+        operation.run();
+        List<String> statements = jdbcTemplate.queryForList(
+                "select sql_statement from information_schema.query_statistics", String.class);
+        jdbcTemplate.execute("set query_statistics false");
+        List<String> result = new ArrayList<>();
+        for (String sql : statements) {
+            String command = sql.trim().toLowerCase();
+            if (command.startsWith("select") || command.startsWith("update")
+                    || command.startsWith("delete") || command.startsWith("merge")) {
+                result.add(sql);
+            }
+        }
+        assertFalse(result.isEmpty(), "Операция не выполнила ни одного запроса");
+        return result;
+    }
+
+    //план запроса (параметры остаются неизвестными, как при подготовке запроса драйвером)
+    private String explain(String sql) {
+        return jdbcTemplate.query(connection -> connection.prepareStatement("explain " + sql), (rs) -> {
+            rs.next();
+            return rs.getString(1);
+        });
+    }
+
+    //все обращения к таблицам в порядке их появления в плане
+    private List<String> getAccesses(String plan) {
+        List<String> accesses = new ArrayList<>();
+        Matcher matcher = ACCESS.matcher(plan);
+        while (matcher.find()) {
+            accesses.add(matcher.group());
+        }
+        return accesses;
+    }
+
+    //обращения без условия по индексу
+    private List<String> getScans(String plan) {
+        //первые строки в порядке индекса читаются без перебора
+        boolean limitedByIndex = plan.contains("/* index sorted */") && plan.contains("FETCH FIRST");
+        List<String> accesses = getAccesses(plan);
+        List<String> scans = new ArrayList<>();
+        for (int i = 0; i < accesses.size(); i++) {
+            String access = accesses.get(i);
+            if (!access.contains(": ") && !(limitedByIndex && (i == 0))) {
+                scans.add(access);
+            }
+        }
+        return scans;
+    }
+
+    //индексы таблицы, начинающиеся с заданного столбца
+    private List<String> getIndexes(String table, String column) {
+        return jdbcTemplate.queryForList("select index_name from information_schema.index_columns " +
+                "where table_schema = 'PUBLIC' and table_name = ? and column_name = ? and ordinal_position = 1 " +
+                "order by index_name", String.class, table, column);
+    }
+}
@@ -0,0 +1,165 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.IncorrectParameterException;
+import ru.yandex.practicum.filmorate.metrics.StatementCounter;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikeFlushScheduler;
+import ru.yandex.practicum.filmorate.service.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.util.TestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//отложенная запись лайков (сброс по таймеру отключен, буфер сбрасывается явно)
+@SpringBootTest(properties = {"filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.flush-interval-ms=3600000"})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class WriteBehindLikeTests {
+    private static final int FILM_COUNT = 5;
+    private static final int USER_COUNT = 10;
+    private final FilmService service;
+    private final UserService userService;
+    private final LikeWriteBuffer buffer;
+    private final ApplicationContext context;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void resetDatabase() {
+        jdbcTemplate.update(TestUtils.getSqlForResetUsers(USER_COUNT));
+        jdbcTemplate.update(TestUtils.getSqlForResetFilms(FILM_COUNT));
+        userService.reload();
+        service.reload();
+    }
+
+    @Test
+    public void readYourWritesTest() {
+        service.addLike(1, 2);
+        service.addLike(1, 3);
+        //лайки еще не в базе, но уже видны при чтении фильма
+        assertEquals(countLikes(), 0);
+        assertEquals(service.get(1).getLikes(), Set.of(2L, 3L));
+        service.deleteLike(1, 3);
+        assertEquals(service.get(1).getLikes(), Set.of(2L));
+        //после сброса лайки в базе, счетчик и рейтинг обновлены
+        buffer.flush();
+        assertEquals(countLikes(), 1);
+        assertEquals(jdbcTemplate.queryForObject(
+                "select like_count from films where id = 1", Integer.class), 1);
+        assertEquals(service.getTopFilms(1L).get(0).getId(), 1);
+        assertEquals(service.get(1).getLikes(), Set.of(2L));
+    }
+
+    @Test
+    public void coalescedFlushTest() {
+        //много действий с одним фильмом записываются несколькими пакетными запросами
+        for (long userId = 1; userId <= USER_COUNT; userId++) {
+            service.addLike(2, userId);
+        }
+        service.deleteLike(2, 1);
+        service.deleteLike(2, 2);
+        StatementCounter.reset();
+        buffer.flush();
+        assertTrue(StatementCounter.get() <= 3); //чтение существующих, пакет вставок, счетчик
+        assertEquals(countLikes(), USER_COUNT - 2);
+        Film film = service.get(2);
+        assertEquals(film.getLikes().size(), USER_COUNT - 2);
+        assertFalse(film.getLikes().contains(1L));
+        //повторный лайк уже записанного не меняет счетчик
+        service.addLike(2, 5);
+        buffer.flush();
+        assertEquals(service.getTopFilms(1L).get(0).getLikes().size(), USER_COUNT - 2);
+    }
+
+    @Test
+    public void getLikesFlushesFilmTest() {
+        service.addLike(3, 4);
+        assertEquals(service.getLikes(3).size(), 1);
+        assertEquals(countLikes(), 1);
+    }
+
+    @Test
+    public void listingFlushesBufferTest() {
+        //выгрузка всех фильмов (целиком, страницей или потоком) видит отложенные лайки
+        service.addLike(3, 4);
+        assertEquals(service.getAll().get(2).getLikes(), Set.of(4L));
+        assertEquals(countLikes(), 1);
+        service.addLike(3, 5);
+        assertEquals(service.getPage(2, 1).getItems().get(0).getLikes(), Set.of(4L, 5L));
+        service.deleteLike(3, 4);
+        List<Film> films = new ArrayList<>();
+        service.forEach(films::add);
+        assertEquals(films.get(2).getLikes(), Set.of(5L));
+        assertEquals(countLikes(), 1);
+        //таймер сброса создается только при включенной отложенной записи
+        assertEquals(context.getBeansOfType(LikeFlushScheduler.class).size(), 1);
+    }
+
+    @Test
+    public void unknownUserTest() {
+        assertThrows(IncorrectParameterException.class, () -> service.addLike(1, USER_COUNT + 1));
+    }
+
+    @Test
+    public void updateDiscardsPendingLikesTest() {
+        service.addLike(4, 1);
+        Film film = TestUtils.generateFilm(4);
+        film.addLike(2);
+        service.update(film);
+        buffer.flush();
+        assertEquals(service.get(4).getLikes(), Set.of(2L));
+    }
+
+    @Test
+    public void failedFlushRetryTest() {
+        service.addLike(1, 2);
+        service.addLike(1, 3);
+        //таблица лайков недоступна: сброс не удается, действия остаются в буфере
+        jdbcTemplate.execute("alter table likes rename to likes_off");
+        try {
+            buffer.flush();
+        } finally {
+            jdbcTemplate.execute("alter table likes_off rename to likes");
+        }
+        assertEquals(countLikes(), 0);
+        assertEquals(service.get(1).getLikes(), Set.of(2L, 3L));
+        //более позднее действие того же пользователя важнее возвращенного в буфер
+        service.deleteLike(1, 3);
+        buffer.flush();
+        assertEquals(countLikes(), 1);
+        assertEquals(service.get(1).getLikes(), Set.of(2L));
+        assertEquals(service.getLikeCount(1), 1);
+    }
+
+    @Test
+    public void deleteLikeResultTest() {
+        //снятие лайка сообщает, был ли он, с учетом и записанных, и отложенных действий
+        assertFalse(service.deleteLike(1, 2));
+        service.addLike(1, 2);
+        assertTrue(service.deleteLike(1, 2)); //лайк еще в буфере
+        assertFalse(service.deleteLike(1, 2));
+        service.addLike(1, 2);
+        buffer.flush();
+        assertTrue(service.deleteLike(1, 2)); //лайк в базе
+        assertFalse(service.deleteLike(1, 2));
+        buffer.flush();
+        assertEquals(countLikes(), 0);
+    }
+
+    private int countLikes() {
+        return jdbcTemplate.queryForObject("select count(*) from likes", Integer.class);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+/*
+    Проверка кэшей на устаревшие данные: читатели непрерывно заполняют кэш,
+    в том числе версиями, прочитанными до записи, а писатели меняют данные и сразу проверяют результат.
+ */
+public class ConcurrentReads {
+
+    /*
+        запускает writerCount писателей (каждый получает свой номер) и столько же читателей,
+        повторяющих read до завершения всех писателей; ошибки проверок в потоках пробрасываются
+     */
+    public static void runWithReaders(int writerCount, Runnable read, IntConsumer write) throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(2 * writerCount);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < writerCount; i++) {
+                readers.add(executor.submit(() -> {
+                    while (!done.get()) {
+                        read.run();
+                    }
+                }));
+            }
+            List<Future<?>> writers = new ArrayList<>();
+            for (int i = 0; i < writerCount; i++) {
+                int number = i;
+                writers.add(executor.submit(() -> write.accept(number)));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            done.set(true);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.util;
+
+import ru.yandex.practicum.filmorate.metrics.StatementCounter;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+    Проверка бюджета SQL-запросов: вызов должен выполнить ровно заданное число запросов.
+    Считаются запросы текущего потока, поэтому вызывать нужно сервис (то же, что делает конечная точка).
+ */
+public class StatementBudget {
+
+    //выполняет вызов и проверяет число запросов; возвращает результат вызова
+    public static <T> T assertStatements(int expected, Supplier<T> call) {
+        StatementCounter.reset();
+        T result = call.get();
+        assertEquals(expected, StatementCounter.get(), "Число SQL-запросов");
+        return result;
+    }
+
+    //то же для вызова без результата
+    public static void assertStatements(int expected, Runnable call) {
+        StatementCounter.reset();
+        call.run();
+        assertEquals(expected, StatementCounter.get(), "Число SQL-запросов");
+    }
+}
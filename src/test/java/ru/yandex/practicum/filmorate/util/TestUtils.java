@@ -66,6 +66,8 @@ public class TestUtils {
 
     public static String getSqlForResetUsers(int count) {
         StringBuilder stringBuilder = new StringBuilder();
+        //лайки ссылаются на пользователей, поэтому удаляются вместе с ними (как в DbUserStorage.deleteAll)
+        stringBuilder.append("DELETE FROM likes; UPDATE films SET like_count = 0; ");
         stringBuilder.append("DROP TABLE users, friends CASCADE; ");
         try {
             stringBuilder.append(new String(Files.readAllBytes(